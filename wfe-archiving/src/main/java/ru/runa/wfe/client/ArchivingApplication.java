@@ -5,6 +5,7 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.URL;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -32,6 +33,8 @@ import ru.runa.wfe.service.delegate.ArchivingServiceDelegate;
 import ru.runa.wfe.service.delegate.Delegates;
 import ru.runa.wfe.user.User;
 
+import com.google.common.collect.Lists;
+
 public class ArchivingApplication {
 
     private static final String SUCCESS_RESULT = "SUCCESS";
@@ -91,14 +94,21 @@ public class ArchivingApplication {
 
                 long startTime = System.currentTimeMillis();
                 List<WfProcess> processes = Delegates.getExecutionService().getProcesses(user, batchPresentation);
-
+                List<Long> processIds = Lists.newArrayListWithExpectedSize(processes.size());
                 for (WfProcess wfProcess : processes) {
+                    processIds.add(wfProcess.getId());
+                }
+                Collections.sort(processIds);
+
+                // each chunk is archived in own transaction; archived processes are deleted, so next run continues from first not archived one
+                ArchivingService archivingService = ArchivingServiceDelegate.getArchivingServiceStatic();
+                for (List<Long> chunk : Lists.partition(processIds, getChunkSize())) {
                     try {
-                        log.info(String.format("start backup process with id = %s ...", wfProcess.getId()));
-                        ArchivingServiceDelegate.getArchivingServiceStatic().backupProcess(user, wfProcess.getId());
+                        log.info(String.format("start backup processes with ids = %s ...", chunk));
+                        archivingService.backupProcesses(user, chunk);
                         log.info(String.format(SUCCESS_RESULT));
                     } catch (Exception e) {
-                        log.error(String.format("error execute backup process with id = %s", wfProcess.getId()));
+                        log.error(String.format("error execute backup processes with ids = %s", chunk));
                         log.error("", e);
                     }
                     if (isEnd(startTime, minutesCount)) {
@@ -240,6 +250,11 @@ public class ArchivingApplication {
         }
     }
 
+    private static int getChunkSize() {
+        String chunkSize = properties.getProperty("backup.processes.chunk.size");
+        return chunkSize != null ? Integer.parseInt(chunkSize.trim()) : 100;
+    }
+
     private static boolean isEnd(long start, int minutes) {
         long currentTime = System.currentTimeMillis();
         return currentTime >= start + minutes * 60 * 1000;
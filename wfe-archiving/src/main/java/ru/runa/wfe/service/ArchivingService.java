@@ -1,5 +1,7 @@
 package ru.runa.wfe.service;
 
+import java.util.List;
+
 import javax.ejb.Remote;
 
 import ru.runa.wfe.user.User;
@@ -21,6 +23,15 @@ public interface ArchivingService {
      */
     public void backupProcess(User user, Long processId);
 
+    /**
+     * Backup processes by ids in single transaction.
+     * 
+     * @param user
+     * @param processIds
+     *            root processes ids, subprocesses are archived with root process
+     */
+    public void backupProcesses(User user, List<Long> processIds);
+
     /**
      * Backup process definition by definition name and version
      * 
@@ -1,5 +1,7 @@
 package ru.runa.wfe.service.delegate;
 
+import java.util.List;
+
 import ru.runa.wfe.service.ArchivingService;
 import ru.runa.wfe.user.User;
 
@@ -22,6 +24,15 @@ public class ArchivingServiceDelegate extends EJB3Delegate implements ArchivingS
         }
     }
 
+    @Override
+    public void backupProcesses(User user, List<Long> processIds) {
+        try {
+            getArchivingService().backupProcesses(user, processIds);
+        } catch (Exception e) {
+            throw handleException(e);
+        }
+    }
+
     @Override
     public void backupProcessDefinition(User user, String definitionName, Long version) {
         try {
@@ -1,5 +1,7 @@
 package ru.runa.wfe.service.impl;
 
+import java.util.List;
+
 import javax.ejb.Stateless;
 import javax.ejb.TransactionManagement;
 import javax.ejb.TransactionManagementType;
@@ -43,6 +45,14 @@ public class ArchivingServiceBean implements ArchivingService {
         archivingLogic.backupProcess(user, processId);
     }
 
+    @Override
+    @WebResult(name = "result")
+    public void backupProcesses(@WebParam(name = "user") User user, @WebParam(name = "processIds") List<Long> processIds) {
+        Preconditions.checkArgument(user != null);
+        Preconditions.checkArgument(processIds != null);
+        archivingLogic.backupProcesses(user, processIds);
+    }
+
     @Override
     @WebResult(name = "result")
     public void backupProcessDefinition(@WebParam(name = "user") User user, @WebParam(name = "definitionName") String definitionName,
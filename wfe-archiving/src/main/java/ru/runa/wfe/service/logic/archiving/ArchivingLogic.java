@@ -66,6 +66,11 @@ public class ArchivingLogic extends WFCommonLogic implements ArchivingService {
 
     private static final String ASSIGNED_STRATEGY = "assigned";
 
+    /**
+     * Maximum count of processes in query for linked records (logs, jobs, variables).
+     */
+    private static final int RECORDS_PARTITION_SIZE = 500;
+
     private static Map<String, SessionFactory> factoryMap = Maps.newConcurrentMap();
 
     private static Map<String, MappingInfo> MAPPING_INFO;
@@ -97,6 +102,21 @@ public class ArchivingLogic extends WFCommonLogic implements ArchivingService {
         processLogic(user, processId, true);
     }
 
+    @Override
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void backupProcesses(User user, List<Long> processIds) {
+        for (Long processId : processIds) {
+            // process, which can't be archived, must not prevent archiving of other processes in chunk
+            try {
+                processLogic(user, processId, true);
+            } catch (EntityNotFoundException e) {
+                log.warn(String.format("process with id = %s is not found, skipping", processId));
+            } catch (PermissionDeniedException e) {
+                log.warn(String.format("process with id = %s can't be archived by %s, skipping", processId, user));
+            }
+        }
+    }
+
     @Override
     @Transactional(propagation = Propagation.REQUIRES_NEW)
     public void backupProcessDefinition(User user, String definitionName, Long version) {
@@ -263,22 +283,21 @@ public class ArchivingLogic extends WFCommonLogic implements ArchivingService {
         }
     }
 
+    /**
+     * Replicates logs, jobs and variables of process tree. Records are loaded for up to {@link #RECORDS_PARTITION_SIZE} processes with single query
+     * and written with single flush for each records type.
+     */
     private void replicateLinkedRecords(boolean toArchive, HibernateTemplate targetTemplate, Session session, HibernateTemplate srcTemplate,
             LinkedList<Process> linkedList) {
         try {
-            for (Process p : linkedList) {
-                List<ProcessLog> logs = getProcessLogs(p.getId(), srcTemplate);
-                for (ProcessLog processLog : logs) {
-                    replicateProcessLog(processLog, toArchive, session, targetTemplate);
-                }
-                List<Job> jobs = getJobs(p, srcTemplate);
-                for (Job job : jobs) {
-                    replicateJob(job, toArchive, session, targetTemplate);
-                }
-                List<Variable<?>> variables = getVariables(p, srcTemplate);
-                for (Variable<?> variable : variables) {
-                    replicateVariable(variable, toArchive, session, targetTemplate);
+            for (List<Process> processes : Lists.partition(linkedList, RECORDS_PARTITION_SIZE)) {
+                List<Long> processIds = Lists.newArrayListWithExpectedSize(processes.size());
+                for (Process process : processes) {
+                    processIds.add(process.getId());
                 }
+                replicateAll(getProcessLogs(processIds, srcTemplate), ProcessLog.class, toArchive, session, targetTemplate);
+                replicateAll(getJobs(processes, srcTemplate), Job.class, toArchive, session, targetTemplate);
+                replicateAll(getVariables(processes, srcTemplate), Variable.class, toArchive, session, targetTemplate);
             }
         } catch (Exception e) {
             log.error("error replicate processlog or job or variable");
@@ -346,18 +365,6 @@ public class ArchivingLogic extends WFCommonLogic implements ArchivingService {
         replicate(entity, Swimlane.class, toArchive, session, targetTemplate);
     }
 
-    private void replicateProcessLog(Object entity, boolean toArchive, Session session, HibernateTemplate targetTemplate) {
-        replicate(entity, ProcessLog.class, toArchive, session, targetTemplate);
-    }
-
-    private void replicateJob(Object entity, boolean toArchive, Session session, HibernateTemplate targetTemplate) {
-        replicate(entity, Job.class, toArchive, session, targetTemplate);
-    }
-
-    private void replicateVariable(Object entity, boolean toArchive, Session session, HibernateTemplate targetTemplate) {
-        replicate(entity, Variable.class, toArchive, session, targetTemplate);
-    }
-
     private void replicateExecutor(Object entity, boolean toArchive, Session session, HibernateTemplate targetTemplate) {
         replicate(entity, Executor.class, toArchive, session, targetTemplate);
     }
@@ -375,19 +382,39 @@ public class ArchivingLogic extends WFCommonLogic implements ArchivingService {
         }
     }
 
+    /**
+     * Replicates entities of same class with single identity insert switch and single flush.
+     */
+    private void replicateAll(List<?> entities, Class<?> entityClass, boolean toArchive, Session session, HibernateTemplate targetTemplate) {
+        if (entities.isEmpty()) {
+            return;
+        }
+        String tableName = getTableName(entityClass);
+        try {
+            setIdentityInsert(session, true, tableName);
+            prepareReplicate(toArchive);
+            for (Object entity : entities) {
+                targetTemplate.replicate(entity, ReplicationMode.OVERWRITE);
+            }
+            finishReplicate(toArchive);
+        } finally {
+            setIdentityInsert(session, false, tableName);
+        }
+    }
+
     @SuppressWarnings("unchecked")
-    private List<ProcessLog> getProcessLogs(Long processId, HibernateTemplate template) {
-        return template.find("from ProcessLog where processId=? order by id asc", processId);
+    private List<ProcessLog> getProcessLogs(List<Long> processIds, HibernateTemplate template) {
+        return template.findByNamedParam("from ProcessLog where processId in (:processIds) order by id asc", "processIds", processIds);
     }
 
     @SuppressWarnings("unchecked")
-    private List<Job> getJobs(Process process, HibernateTemplate template) {
-        return template.find("from Job where process=?", process);
+    private List<Job> getJobs(List<Process> processes, HibernateTemplate template) {
+        return template.findByNamedParam("from Job where process in (:processes)", "processes", processes);
     }
 
     @SuppressWarnings("unchecked")
-    private List<Variable<?>> getVariables(Process process, HibernateTemplate template) {
-        return template.find("from Variable where process=?", process);
+    private List<Variable<?>> getVariables(List<Process> processes, HibernateTemplate template) {
+        return template.findByNamedParam("from Variable where process in (:processes)", "processes", processes);
     }
 
     private String getTableName(Class<?> clazz) {
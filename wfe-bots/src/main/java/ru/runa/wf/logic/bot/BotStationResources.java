@@ -112,6 +112,31 @@ public class BotStationResources {
         return RESOURCES.getBooleanProperty("botstations.autostart.enabled", true);
     }
 
+    public static boolean isTaskFeedEnabled() {
+        return RESOURCES.getBooleanProperty("botstation.task.feed.enabled", true);
+    }
+
+    /**
+     * Period, after which bot queries task list even if {@link BotTaskFeed} reports no new tasks. Covers tasks, assigned on other cluster nodes.
+     */
+    public static long getTaskFeedFullPollPeriod() {
+        return RESOURCES.getLongProperty("botstation.task.feed.full.poll.period.seconds", 60) * 1000;
+    }
+
+    /**
+     * Maximum count of threads, executing tasks of one bot; 0 means no limit (thread pool size).
+     */
+    public static int getBotMaxThreads() {
+        return RESOURCES.getIntegerProperty("botstation.bot.max.threads", 0);
+    }
+
+    /**
+     * Maximum count of tasks, waiting for execution in one bot queue. Remaining bot tasks are scheduled on next bot invocation.
+     */
+    public static int getBotQueueMaxSize() {
+        return RESOURCES.getIntegerProperty("botstation.bot.queue.max.size", 1000);
+    }
+
     public static int getStuckTimeoutInMinutes() {
         try {
             return RESOURCES.getIntegerProperty("botstation.stuck.timeout.minutes", 5);
@@ -0,0 +1,87 @@
+/*
+ * This file is part of the RUNA WFE project.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; version 2.1
+ * of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+package ru.runa.wf.logic.bot;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ru.runa.wfe.bot.BotStation;
+import ru.runa.wfe.commons.SystemProperties;
+import ru.runa.wfe.service.handler.BotTaskAssignedListener;
+import ru.runa.wfe.user.Actor;
+import ru.runa.wfe.user.Executor;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Maps;
+
+/**
+ * Feed of tasks, assigned to bots in local bot station. Filled by {@link BotTaskAssignedListener} after task assignment commit and used by bot
+ * invokers to skip task list queries for bots without new tasks.
+ * <p/>
+ * For each bot actor contains version, which is changed on every task assignment to this bot. Bot must query its task list if version is changed
+ * since last query.
+ * <p/>
+ * Feed is local to JVM: tasks, assigned on other cluster nodes, are not reported and found by full poll only (see
+ * {@link BotStationResources#getTaskFeedFullPollPeriod()}).
+ */
+public class BotTaskFeed {
+    private static final ConcurrentMap<Long, AtomicLong> actorVersions = Maps.newConcurrentMap();
+    /**
+     * Changed on task assignment to executor, which is not an actor (all bots must query task lists).
+     */
+    private static final AtomicLong commonVersion = new AtomicLong();
+
+    /**
+     * Returns true, if feed receives all task assignments for bots of bot station and may be used to skip task list queries. Remote bot stations
+     * run in another JVM and are not fed.
+     */
+    public static boolean isEnabled(BotStation botStation) {
+        return SystemProperties.isAutoInvocationLocalBotStationEnabled() && BotStationResources.isTaskFeedEnabled()
+                && Strings.isNullOrEmpty(botStation.getAddress());
+    }
+
+    /**
+     * Must be called, when task is assigned to bot executor.
+     *
+     * @param executor
+     *            Task executor, may be null.
+     */
+    public static void onTaskAssigned(Executor executor) {
+        if (!(executor instanceof Actor)) {
+            commonVersion.incrementAndGet();
+            return;
+        }
+        AtomicLong version = actorVersions.get(executor.getId());
+        if (version == null) {
+            AtomicLong newVersion = new AtomicLong();
+            version = actorVersions.putIfAbsent(executor.getId(), newVersion);
+            if (version == null) {
+                version = newVersion;
+            }
+        }
+        version.incrementAndGet();
+    }
+
+    /**
+     * Returns task assignments version for bot actor. Version must be obtained before task list query.
+     */
+    public static long getVersion(Long actorId) {
+        AtomicLong version = actorVersions.get(actorId);
+        return commonVersion.get() + (version != null ? version.get() : 0);
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * This file is part of the RUNA WFE project.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; version 2.1
+ * of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+package ru.runa.wf.logic.bot;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import ru.runa.wfe.bot.Bot;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Queues;
+
+/**
+ * Fair scheduler for bot tasks execution. Bot tasks are queued per bot and passed to thread pool in round-robin order, no more than thread pool
+ * size at once, so bot with many (or slow) tasks does not delay tasks of other bots. Each bot may occupy no more than
+ * {@link BotStationResources#getBotMaxThreads()} threads, and no more than {@link BotStationResources#getBotQueueMaxSize()} tasks may wait in bot
+ * queue.
+ * <p/>
+ * Bot tasks, passed to thread pool, is registered in scheduled tasks map, which is used for stuck tasks detection.
+ */
+public class BotTaskScheduler {
+    private static final Log log = LogFactory.getLog(BotTaskScheduler.class);
+
+    private final ScheduledThreadPoolExecutor executor;
+    private final Map<BotExecutionStatus, ScheduledFuture<?>> scheduledTasks;
+    private final Map<Long, BotQueue> queues = Maps.newHashMap();
+    /**
+     * Bot queues in round-robin order.
+     */
+    private final List<BotQueue> queuesOrder = Lists.newArrayList();
+    private int nextQueueIndex;
+    private int runningCount;
+
+    public BotTaskScheduler(ScheduledThreadPoolExecutor executor, Map<BotExecutionStatus, ScheduledFuture<?>> scheduledTasks) {
+        this.executor = executor;
+        this.scheduledTasks = scheduledTasks;
+    }
+
+    /**
+     * Checks, if bot queue can't accept more tasks.
+     */
+    public synchronized boolean isQueueFull(Bot bot) {
+        BotQueue queue = queues.get(bot.getId());
+        return queue != null && queue.tasks.size() >= BotStationResources.getBotQueueMaxSize();
+    }
+
+    /**
+     * Checks, if bot task execution is waiting in queue or passed to thread pool and not completed yet.
+     */
+    public synchronized boolean isScheduled(BotExecutionStatus task) {
+        if (scheduledTasks.containsKey(task)) {
+            return true;
+        }
+        for (BotQueue queue : queuesOrder) {
+            for (QueuedTask queuedTask : queue.tasks) {
+                if (queuedTask.task.equals(task)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds bot task execution to bot queue.
+     *
+     * @param bot
+     *            Bot, which executes task.
+     * @param task
+     *            Bot task execution, {@link Runnable} and {@link BotExecutionStatus}.
+     */
+    public synchronized <T extends Runnable & BotExecutionStatus> void schedule(Bot bot, T task) {
+        BotQueue queue = queues.get(bot.getId());
+        if (queue == null) {
+            queue = new BotQueue(bot.getUsername());
+            queues.put(bot.getId(), queue);
+            queuesOrder.add(queue);
+        }
+        queue.tasks.add(new QueuedTask(queue, task));
+        dispatch();
+    }
+
+    /**
+     * Returns queues state for all bots.
+     */
+    public synchronized Collection<BotQueue> getQueues() {
+        return ImmutableList.copyOf(queuesOrder);
+    }
+
+    /**
+     * Passes queued tasks to thread pool while there are free threads.
+     */
+    public synchronized void dispatch() {
+        int maxThreads = BotStationResources.getBotMaxThreads();
+        while (runningCount < executor.getCorePoolSize()) {
+            BotQueue queue = nextQueue(maxThreads);
+            if (queue == null) {
+                return;
+            }
+            QueuedTask task = queue.tasks.poll();
+            queue.runningCount++;
+            runningCount++;
+            try {
+                ScheduledFuture<?> future = executor.schedule(task, 200, TimeUnit.MILLISECONDS);
+                scheduledTasks.put(task.task, future);
+            } catch (RuntimeException e) {
+                queue.runningCount--;
+                runningCount--;
+                log.error("Unable to schedule " + task.task, e);
+                return;
+            }
+        }
+    }
+
+    private BotQueue nextQueue(int maxThreads) {
+        for (int i = 0; i < queuesOrder.size(); i++) {
+            int index = (nextQueueIndex + i) % queuesOrder.size();
+            BotQueue queue = queuesOrder.get(index);
+            if (!queue.tasks.isEmpty() && (maxThreads <= 0 || queue.runningCount < maxThreads)) {
+                nextQueueIndex = index + 1;
+                return queue;
+            }
+        }
+        return null;
+    }
+
+    private synchronized void onCompleted(BotQueue queue, long waitNanos, long executionNanos) {
+        queue.runningCount--;
+        runningCount--;
+        queue.completedCount++;
+        queue.waitNanos += waitNanos;
+        queue.executionNanos += executionNanos;
+        dispatch();
+    }
+
+    /**
+     * State of bot tasks queue.
+     */
+    public static class BotQueue {
+        private final String botName;
+        private final Queue<QueuedTask> tasks = Queues.newArrayDeque();
+        private int runningCount;
+        private long completedCount;
+        private long waitNanos;
+        private long executionNanos;
+
+        private BotQueue(String botName) {
+            this.botName = botName;
+        }
+
+        public String getBotName() {
+            return botName;
+        }
+
+        /**
+         * Returns count of bot tasks, waiting for execution.
+         */
+        public int getQueueSize() {
+            return tasks.size();
+        }
+
+        public int getRunningCount() {
+            return runningCount;
+        }
+
+        public long getCompletedCount() {
+            return completedCount;
+        }
+
+        /**
+         * Returns average time from task queuing to execution start.
+         */
+        public long getAverageWaitMillis() {
+            return completedCount == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(waitNanos / completedCount);
+        }
+
+        public long getAverageExecutionMillis() {
+            return completedCount == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(executionNanos / completedCount);
+        }
+
+        @Override
+        public String toString() {
+            return botName + ": queued " + tasks.size() + ", running " + runningCount + ", completed " + completedCount + " (wait "
+                    + getAverageWaitMillis() + " ms, execution " + getAverageExecutionMillis() + " ms average)";
+        }
+    }
+
+    private class QueuedTask implements Runnable {
+        private final BotQueue queue;
+        private final BotExecutionStatus task;
+        private final Runnable runnable;
+        private final long queuedTime = System.nanoTime();
+
+        <T extends Runnable & BotExecutionStatus> QueuedTask(BotQueue queue, T task) {
+            this.queue = queue;
+            this.task = task;
+            this.runnable = task;
+        }
+
+        @Override
+        public void run() {
+            long startTime = System.nanoTime();
+            try {
+                runnable.run();
+            } finally {
+                onCompleted(queue, startTime - queuedTime, System.nanoTime() - startTime);
+            }
+        }
+    }
+}
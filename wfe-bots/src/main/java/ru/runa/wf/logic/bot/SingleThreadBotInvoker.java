@@ -48,11 +48,15 @@ public class SingleThreadBotInvoker implements BotInvoker {
         this.botStation = Delegates.getBotService().getBotStation(botStation.getId());
         logBotsActivites();
         configure();
+        boolean taskFeedEnabled = BotTaskFeed.isEnabled(this.botStation);
         for (WorkflowBotExecutor botExecutor : botExecutors) {
             try {
                 if (resetFailedDelay) {
                     botExecutor.resetFailedDelay();
                 }
+                if (taskFeedEnabled && !botExecutor.isNewTasksQueryRequired()) {
+                    continue;
+                }
                 Set<WfTask> tasks = botExecutor.getNewTasks();
                 for (WfTask task : tasks) {
                     WorkflowBotTaskExecutor botTaskExecutor = botExecutor.createBotTaskExecutor(task);
@@ -67,6 +67,11 @@ public class WorkflowBotExecutor {
     private Bot bot;
     private final Map<String, BotTask> botTasks = Maps.newHashMap();
     private final Set<WorkflowBotTaskExecutor> botTaskExecutors = new HashSet<WorkflowBotTaskExecutor>();
+    /**
+     * {@link BotTaskFeed} version on last task list query.
+     */
+    private long taskFeedVersion = -1;
+    private long lastTasksQueryTime;
 
     public WorkflowBotExecutor(User user, Bot bot, List<BotTask> tasks) {
         this.user = user;
@@ -118,7 +123,36 @@ public class WorkflowBotExecutor {
         return result;
     }
 
+    /**
+     * Checks, if new tasks may be available for bot and {@link #getNewTasks()} must be called. Must be used only if {@link BotTaskFeed} is enabled
+     * for bot station. Returns false only if feed reports no task assignments since last task list query and there are no failed tasks to retry.
+     * Transactional bots always query task list, because their embedded subprocess binding is checked on query.
+     */
+    public boolean isNewTasksQueryRequired() {
+        if (bot.isTransactional() || taskFeedVersion != BotTaskFeed.getVersion(user.getActor().getId())) {
+            return true;
+        }
+        if (System.currentTimeMillis() - lastTasksQueryTime >= BotStationResources.getTaskFeedFullPollPeriod()) {
+            return true;
+        }
+        for (WorkflowBotTaskExecutor taskExecutor : botTaskExecutors) {
+            if (taskExecutor.getExecutionStatus() == WorkflowBotTaskExecutionStatus.FAILED) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Must be called, when some new tasks was not scheduled for execution (and must be returned by next {@link #getNewTasks()} call).
+     */
+    public void onTasksPostponed() {
+        taskFeedVersion = -1;
+    }
+
     public Set<WfTask> getNewTasks() {
+        taskFeedVersion = BotTaskFeed.getVersion(user.getActor().getId());
+        lastTasksQueryTime = System.currentTimeMillis();
         Set<WfTask> result = new HashSet<WfTask>();
         for (Iterator<WorkflowBotTaskExecutor> botIterator = botTaskExecutors.iterator(); botIterator.hasNext();) {
             WorkflowBotTaskExecutor taskExecutor = botIterator.next();
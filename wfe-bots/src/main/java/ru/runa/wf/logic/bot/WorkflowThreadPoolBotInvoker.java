@@ -17,6 +17,8 @@
  */
 package ru.runa.wf.logic.bot;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -62,6 +64,8 @@ public class WorkflowThreadPoolBotInvoker implements BotInvoker, Runnable {
 
     private final Map<BotExecutionStatus, ScheduledFuture<?>> scheduledTasks = Maps.newConcurrentMap();
 
+    private BotTaskScheduler scheduler;
+
     private BotStation botStation;
 
     /**
@@ -78,7 +82,7 @@ public class WorkflowThreadPoolBotInvoker implements BotInvoker, Runnable {
         if (executor == null) {
             log.debug(String.format("Creating new executor(ScheduledExecutorService),size %d", poolSize));
             executor = new ScheduledThreadPoolExecutor(poolSize, new BotNamedThreadFactory());
-
+            scheduler = new BotTaskScheduler(executor, scheduledTasks);
         } else {
             if (executor.getCorePoolSize() != poolSize) {
                 log.debug(String.format("change core thread pool size from %d to %d", executor.getCorePoolSize(), poolSize));
@@ -90,6 +94,7 @@ public class WorkflowThreadPoolBotInvoker implements BotInvoker, Runnable {
             }
         }
         checkStuckBots();
+        scheduler.dispatch();
         botInvokerInvocation = executor.schedule(this, 1000, TimeUnit.MILLISECONDS);
         logBotsActivites();
         if (resetFailedDelay) {
@@ -171,8 +176,12 @@ public class WorkflowThreadPoolBotInvoker implements BotInvoker, Runnable {
             log.warn("executor(ScheduledExecutorService) == null");
             return;
         }
+        boolean taskFeedEnabled = BotTaskFeed.isEnabled(botStation);
         for (WorkflowBotExecutor botExecutor : botExecutors.values()) {
             try {
+                if (taskFeedEnabled && !botExecutor.isNewTasksQueryRequired()) {
+                    continue;
+                }
                 if (botExecutor.getBot().isSequentialExecution()) {
                     scheduleSequentialBot(botExecutor);
                 } else {
@@ -189,7 +198,15 @@ public class WorkflowThreadPoolBotInvoker implements BotInvoker, Runnable {
     }
 
     /**
-     * Schedules all task for bot. Each parallel tasks scheduled as self. Sequential tasks is grouped for sequential execution.
+     * Returns bot queues state: waiting and running tasks count, throughput and latency.
+     */
+    public Collection<BotTaskScheduler.BotQueue> getBotQueues() {
+        return scheduler != null ? scheduler.getQueues() : Collections.<BotTaskScheduler.BotQueue> emptyList();
+    }
+
+    /**
+     * Schedules all task for bot. Each parallel tasks scheduled as self. Sequential tasks is grouped for sequential execution. Tasks are not
+     * scheduled if bot queue is full.
      *
      * @param botExecutor
      *            Bot execution data.
@@ -207,9 +224,16 @@ public class WorkflowThreadPoolBotInvoker implements BotInvoker, Runnable {
                 // error message
                 log.error("No handler for bot task " + task.getName() + " in " + botExecutor.getBot());
             } else if (botTaskConfiguration.isSequentialExecution()
-                    && scheduledTasks.containsKey(new WorkflowSequentialBotTaskExecutor(botExecutor.getBot(), botTaskConfiguration, null))) {
+                    && scheduler.isScheduled(new WorkflowSequentialBotTaskExecutor(botExecutor.getBot(), botTaskConfiguration, null))) {
+                // task will be taken after running sequential execution completion, task list must be queried again
+                botExecutor.onTasksPostponed();
                 continue;
             }
+            if (scheduler.isQueueFull(botExecutor.getBot())) {
+                log.debug("Queue is full for " + botExecutor.getBot() + ", remaining tasks will be scheduled later");
+                botExecutor.onTasksPostponed();
+                break;
+            }
             WorkflowBotTaskExecutor botTaskExecutor = botExecutor.createBotTaskExecutor(task);
             if (botTaskConfiguration != null && botTaskConfiguration.isSequentialExecution()) {
                 List<WorkflowBotTaskExecutor> botTasks = sequentialTasks.get(task.getName());
@@ -219,15 +243,13 @@ public class WorkflowThreadPoolBotInvoker implements BotInvoker, Runnable {
                 }
                 botTasks.add(botTaskExecutor);
             } else {
-                ScheduledFuture<?> future = executor.schedule(botTaskExecutor, 200, TimeUnit.MILLISECONDS);
-                scheduledTasks.put(botTaskExecutor, future);
+                scheduler.schedule(botExecutor.getBot(), botTaskExecutor);
             }
         }
         for (String taskName : sequentialTasks.keySet()) {
             WorkflowSequentialBotTaskExecutor botTaskExecutor = new WorkflowSequentialBotTaskExecutor(botExecutor.getBot(),
                     botExecutor.getBotTasks().get(taskName), sequentialTasks.get(taskName));
-            ScheduledFuture<?> future = executor.schedule(botTaskExecutor, 200, TimeUnit.MILLISECONDS);
-            scheduledTasks.put(botTaskExecutor, future);
+            scheduler.schedule(botExecutor.getBot(), botTaskExecutor);
         }
     }
 
@@ -238,7 +260,7 @@ public class WorkflowThreadPoolBotInvoker implements BotInvoker, Runnable {
      *            Component, used to create new bot task executors.
      */
     private void scheduleSequentialBot(WorkflowBotExecutor botExecutor) {
-        if (scheduledTasks.containsKey(new WorkflowSequentialBotTaskExecutor(botExecutor.getBot(), null, null))) {
+        if (scheduler.isScheduled(new WorkflowSequentialBotTaskExecutor(botExecutor.getBot(), null, null))) {
             return;
         }
         List<WorkflowBotTaskExecutor> tasksToExecute = Lists.newLinkedList();
@@ -247,11 +269,15 @@ public class WorkflowThreadPoolBotInvoker implements BotInvoker, Runnable {
             tasksToExecute.add(botExecutor.createBotTaskExecutor(task));
         }
         WorkflowSequentialBotTaskExecutor botTaskExecutor = new WorkflowSequentialBotTaskExecutor(botExecutor.getBot(), null, tasksToExecute);
-        ScheduledFuture<?> future = executor.schedule(botTaskExecutor, 200, TimeUnit.MILLISECONDS);
-        scheduledTasks.put(botTaskExecutor, future);
+        scheduler.schedule(botExecutor.getBot(), botTaskExecutor);
     }
 
     private void logBotsActivites() {
+        if (log.isDebugEnabled() && scheduler != null) {
+            for (BotTaskScheduler.BotQueue queue : scheduler.getQueues()) {
+                log.debug(queue);
+            }
+        }
         BotLogger botLogger = BotStationResources.createBotLogger();
         if (botLogger == null) {
             return;
@@ -21,6 +21,7 @@ public class BotStationTaskNotifier implements TaskNotifier {
         if (SystemProperties.isAutoInvocationLocalBotStationEnabled() && task.getSwimlane() != null) {
             SwimlaneDefinition swimlaneDefinition = processDefinition.getSwimlaneNotNull(task.getSwimlaneName());
             if (swimlaneDefinition.isBotExecutor()) {
+                BotTaskAssignedListener.register(task.getExecutor());
                 if (botStations == null) {
                     botStations = Delegates.getBotService().getBotStations();
                 }
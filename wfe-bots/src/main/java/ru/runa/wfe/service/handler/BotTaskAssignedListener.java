@@ -0,0 +1,60 @@
+package ru.runa.wfe.service.handler;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.Transaction;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import ru.runa.wf.logic.bot.BotTaskFeed;
+import ru.runa.wfe.commons.Utils;
+import ru.runa.wfe.user.Executor;
+
+import com.google.common.base.Objects;
+
+/**
+ * Notifies {@link BotTaskFeed} about task assignment after transaction commit, so bot never misses task, which is not yet visible to its task list
+ * query. Registered as JTA synchronization, so it works for any transaction type (EJB, Spring managed in job executor, etc).
+ */
+public class BotTaskAssignedListener implements Synchronization {
+    private static final Log log = LogFactory.getLog(BotTaskAssignedListener.class);
+    private final Executor executor;
+
+    public BotTaskAssignedListener(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Registers listener in current transaction. Feed is notified immediately, if there is no active transaction.
+     */
+    public static void register(Executor executor) {
+        try {
+            Transaction transaction = Utils.getTransaction();
+            if (transaction != null && transaction.getStatus() == Status.STATUS_ACTIVE) {
+                transaction.registerSynchronization(new BotTaskAssignedListener(executor));
+                return;
+            }
+        } catch (Exception e) {
+            log.warn("Unable to register synchronization, task feed is notified immediately", e);
+        }
+        BotTaskFeed.onTaskAssigned(executor);
+    }
+
+    @Override
+    public void beforeCompletion() {
+    }
+
+    @Override
+    public void afterCompletion(int status) {
+        if (status != Status.STATUS_ROLLEDBACK) {
+            BotTaskFeed.onTaskAssigned(executor);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(getClass()).add("executor", executor).toString();
+    }
+
+}
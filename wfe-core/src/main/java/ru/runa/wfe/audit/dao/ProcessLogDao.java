@@ -2,9 +2,15 @@ package ru.runa.wfe.audit.dao;
 
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.Transaction;
 import org.hibernate.Query;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -16,7 +22,12 @@ import ru.runa.wfe.audit.QNodeEnterLog;
 import ru.runa.wfe.audit.QProcessLog;
 import ru.runa.wfe.audit.QTransitionLog;
 import ru.runa.wfe.audit.Severity;
+import ru.runa.wfe.audit.TaskCreateLog;
+import ru.runa.wfe.audit.TaskEndLog;
+import ru.runa.wfe.audit.TransitionLog;
 import ru.runa.wfe.commons.ClassLoaderUtil;
+import ru.runa.wfe.commons.SystemProperties;
+import ru.runa.wfe.commons.Utils;
 import ru.runa.wfe.commons.dao.GenericDao;
 import ru.runa.wfe.execution.Process;
 import ru.runa.wfe.execution.Token;
@@ -26,27 +37,39 @@ import ru.runa.wfe.lang.SubprocessDefinition;
 /**
  * DAO for {@link ProcessLog}.
  * 
+ * If process.log.buffer.enabled property is set, logs are buffered per transaction and written before transaction commit (or before logs reading
+ * in same transaction), so log inserts are grouped into JDBC batches. Customization DAO is also called while buffer is written.
+ * 
  * @author dofs
  * @since 4.0
  */
 @Component
 public class ProcessLogDao extends GenericDao<ProcessLog> {
+    /**
+     * Log types, used in process graph drawing.
+     */
+    private static final List<Class<? extends ProcessLog>> GRAPH_LOG_CLASSES = ImmutableList.<Class<? extends ProcessLog>> of(TransitionLog.class,
+            TaskCreateLog.class, TaskEndLog.class);
 
     @Autowired
     private ProcessLogAwareDao customizationDao;
 
+    /**
+     * Logs, added by not completed transactions and not written yet.
+     */
+    private final ConcurrentMap<Transaction, List<BufferedLog>> bufferedLogs = Maps.newConcurrentMap();
+
     @SuppressWarnings("unchecked")
     public List<ProcessLog> getAll(Long processId) {
+        flushBufferedLogs();
         QProcessLog pl = QProcessLog.processLog;
         return queryFactory.selectFrom(pl).where(pl.processId.eq(processId)).orderBy(pl.id.asc()).fetch();
     }
 
     @SuppressWarnings("unchecked")
     public List<ProcessLog> get(Long processId, ProcessDefinition definition) {
-        QTransitionLog tl = QTransitionLog.transitionLog;
-        boolean haveOldLogs = queryFactory.select(tl.id).from(tl).where(tl.processId.eq(processId).and(tl.nodeId.isNull())).fetchFirst() != null;
-
-        if (haveOldLogs) {
+        flushBufferedLogs();
+        if (haveOldLogs(processId)) {
             // TODO Pre 01.02.2014, remove when obsolete.
             log.debug("fallbackToOldAlgorithm in " + processId);
             List<ProcessLog> logs = getAll(processId);
@@ -102,8 +125,65 @@ public class ProcessLogDao extends GenericDao<ProcessLog> {
                 .fetch();
     }
 
+    /**
+     * Loads logs, used in process graph drawing (transitions and tasks logs), same as {@link #get(Long, ProcessDefinition)} does for all logs.
+     */
+    @SuppressWarnings("unchecked")
+    public List<ProcessLog> getGraphLogs(Long processId, ProcessDefinition definition) {
+        flushBufferedLogs();
+        List<ProcessLog> result = Lists.newArrayList();
+        if (haveOldLogs(processId)) {
+            for (ProcessLog log : get(processId, definition)) {
+                for (Class<? extends ProcessLog> logClass : GRAPH_LOG_CLASSES) {
+                    if (logClass.isInstance(log)) {
+                        result.add(log);
+                    }
+                }
+            }
+            return result;
+        }
+        boolean subprocessDefinition = definition instanceof SubprocessDefinition;
+        for (Class<? extends ProcessLog> logClass : GRAPH_LOG_CLASSES) {
+            String hql = "from " + logClass.getName() + " where processId = :processId and nodeId " + (subprocessDefinition ? "like" : "not like")
+                    + " :nodeId order by id asc";
+            Query query = sessionFactory.getCurrentSession().createQuery(hql);
+            query.setParameter("processId", processId);
+            query.setParameter("nodeId", subprocessDefinition ? definition.getNodeId() + ".%" : "sub%");
+            result.addAll(query.list());
+        }
+        return result;
+    }
+
+    private boolean haveOldLogs(Long processId) {
+        QTransitionLog tl = QTransitionLog.transitionLog;
+        return queryFactory.select(tl.id).from(tl).where(tl.processId.eq(processId).and(tl.nodeId.isNull())).fetchFirst() != null;
+    }
+
     @SuppressWarnings("unchecked")
     public List<ProcessLog> getAll(final ProcessLogFilter filter) {
+        flushBufferedLogs();
+        return createQuery(filter).list();
+    }
+
+    /**
+     * Iterates over all process logs in creation order without loading them into memory at once. Returned iterator must be closed.
+     */
+    public ProcessLogIterator iterateAll(Long processId) {
+        flushBufferedLogs();
+        Query query = sessionFactory.getCurrentSession().createQuery("from " + ProcessLog.class.getName() + " where processId = :processId order by id asc");
+        query.setParameter("processId", processId);
+        return new ProcessLogIterator(sessionFactory.getCurrentSession(), query, SystemProperties.getProcessLogFetchSize());
+    }
+
+    /**
+     * Iterates over process logs, matched by filter, in creation order without loading them into memory at once. Returned iterator must be closed.
+     */
+    public ProcessLogIterator iterateAll(ProcessLogFilter filter) {
+        flushBufferedLogs();
+        return new ProcessLogIterator(sessionFactory.getCurrentSession(), createQuery(filter), SystemProperties.getProcessLogFetchSize());
+    }
+
+    private Query createQuery(ProcessLogFilter filter) {
         Preconditions.checkArgument(ProcessLog.class.isAssignableFrom(ClassLoaderUtil.loadClass(filter.getRootClassName())),
                 "invalid filter root class name");
 
@@ -154,19 +234,21 @@ public class ProcessLogDao extends GenericDao<ProcessLog> {
         if (filterBySeverity) {
             query.setParameterList("severities", filter.getSeverities());
         }
-        return query.list();
+        return query;
     }
 
     /**
      * Deletes all process logs.
      */
     public void deleteAll(Long processId) {
+        flushBufferedLogs();
         log.debug("deleting logs for process " + processId);
         QProcessLog pl = QProcessLog.processLog;
         queryFactory.delete(pl).where(pl.processId.eq(processId)).execute();
     }
 
     public boolean isNodeEntered(Process process, String nodeId) {
+        flushBufferedLogs();
         QNodeEnterLog nel = QNodeEnterLog.nodeEnterLog;
         return queryFactory.select(nel.id).from(nel).where(nel.processId.eq(process.getId()).and(nel.nodeId.eq(nodeId))).fetchFirst() != null;
     }
@@ -181,10 +263,78 @@ public class ProcessLogDao extends GenericDao<ProcessLog> {
             processLog.setNodeId(token.getNodeId());
         }
         processLog.setCreateDate(new Date());
+        List<BufferedLog> buffer = SystemProperties.isProcessLogBufferEnabled() ? getTransactionBuffer(true) : null;
+        if (buffer != null) {
+            buffer.add(new BufferedLog(processLog, process, token));
+            if (buffer.size() >= SystemProperties.getProcessLogBufferSize()) {
+                flushBufferedLogs();
+            }
+            return;
+        }
         this.create(processLog);
         registerInCustomizationDao(processLog, process, token);
     }
 
+    /**
+     * Writes logs, buffered by current transaction.
+     */
+    public void flushBufferedLogs() {
+        if (!SystemProperties.isProcessLogBufferEnabled()) {
+            return;
+        }
+        writeBufferedLogs(getTransactionBuffer(false));
+    }
+
+    private void writeBufferedLogs(List<BufferedLog> buffer) {
+        if (buffer == null || buffer.isEmpty()) {
+            return;
+        }
+        List<BufferedLog> logs = Lists.newArrayList(buffer);
+        buffer.clear();
+        // logs are saved in creation order (identities must follow it), inserts are not mixed with other entities
+        for (BufferedLog bufferedLog : logs) {
+            this.create(bufferedLog.processLog);
+        }
+        for (BufferedLog bufferedLog : logs) {
+            registerInCustomizationDao(bufferedLog.processLog, bufferedLog.process, bufferedLog.token);
+        }
+        flushPendingChanges();
+        log.debug("Written " + logs.size() + " buffered logs");
+    }
+
+    /**
+     * Returns buffer for current transaction.
+     * 
+     * @param create
+     *            create buffer if it's not exists.
+     * @return buffer or <code>null</code>, if there is no active transaction or synchronization can't be registered (logs must be written
+     *         immediately in this case).
+     */
+    private List<BufferedLog> getTransactionBuffer(boolean create) {
+        Transaction transaction;
+        try {
+            transaction = Utils.getTransaction();
+            if (transaction == null || transaction.getStatus() != Status.STATUS_ACTIVE) {
+                return null;
+            }
+        } catch (Exception e) {
+            log.debug("Unable to get transaction, logs are not buffered", e);
+            return null;
+        }
+        List<BufferedLog> buffer = bufferedLogs.get(transaction);
+        if (buffer == null && create) {
+            try {
+                transaction.registerSynchronization(new BufferedLogsSynchronization(transaction));
+            } catch (Exception e) {
+                log.warn("Unable to register synchronization, logs are not buffered", e);
+                return null;
+            }
+            buffer = Lists.newArrayList();
+            bufferedLogs.put(transaction, buffer);
+        }
+        return buffer;
+    }
+
     private void registerInCustomizationDao(ProcessLog processLog, Process process, Token token) {
         try {
             customizationDao.addLog(processLog, process, token);
@@ -193,4 +343,50 @@ public class ProcessLogDao extends GenericDao<ProcessLog> {
         }
     }
 
+    private static class BufferedLog {
+        private final ProcessLog processLog;
+        private final Process process;
+        private final Token token;
+
+        BufferedLog(ProcessLog processLog, Process process, Token token) {
+            this.processLog = processLog;
+            this.process = process;
+            this.token = token;
+        }
+    }
+
+    /**
+     * Writes buffered logs before transaction commit and drops buffer after transaction completion.
+     */
+    private class BufferedLogsSynchronization implements Synchronization {
+        private final Transaction transaction;
+
+        BufferedLogsSynchronization(Transaction transaction) {
+            this.transaction = transaction;
+        }
+
+        @Override
+        public void beforeCompletion() {
+            // transaction status is not checked here, it may be other than active during completion
+            try {
+                writeBufferedLogs(bufferedLogs.get(transaction));
+            } catch (RuntimeException e) {
+                log.error("Unable to write buffered logs, transaction is marked for rollback", e);
+                try {
+                    transaction.setRollbackOnly();
+                } catch (Exception se) {
+                    log.error("Unable to mark transaction for rollback", se);
+                }
+                throw e;
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            List<BufferedLog> buffer = bufferedLogs.remove(transaction);
+            if (buffer != null && !buffer.isEmpty() && status == Status.STATUS_COMMITTED) {
+                log.error("Transaction is committed with " + buffer.size() + " not written logs");
+            }
+        }
+    }
 }
@@ -0,0 +1,86 @@
+package ru.runa.wfe.audit.dao;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+
+import ru.runa.wfe.audit.ProcessLog;
+
+/**
+ * Forward-only iterator over process logs, backed by database cursor. Logs are fetched from database by portions and each returned log is detached
+ * from session on next iteration step, so memory consumption does not depend on logs count (unless caller holds returned logs).
+ * <p/>
+ * Iterator must be closed after usage; it is closed automatically, when all logs is returned.
+ */
+public class ProcessLogIterator implements Iterator<ProcessLog>, Closeable {
+    private final Session session;
+    private final ScrollableResults results;
+    /**
+     * Next log to return or null, if no more logs available or next log is not fetched yet.
+     */
+    private ProcessLog next;
+    /**
+     * Flag, equals to true, if next log is fetched from cursor.
+     */
+    private boolean nextFetched;
+    /**
+     * Last returned log, which must be detached from session.
+     */
+    private ProcessLog returned;
+    private boolean closed;
+
+    public ProcessLogIterator(Session session, Query query, int fetchSize) {
+        this.session = session;
+        this.results = query.setFetchSize(fetchSize).setReadOnly(true).scroll(ScrollMode.FORWARD_ONLY);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!nextFetched) {
+            evictReturned();
+            next = !closed && results.next() ? (ProcessLog) results.get(0) : null;
+            nextFetched = true;
+            if (next == null) {
+                close();
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public ProcessLog next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        returned = next;
+        next = null;
+        nextFetched = false;
+        return returned;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            evictReturned();
+            results.close();
+        }
+    }
+
+    private void evictReturned() {
+        if (returned != null) {
+            session.evict(returned);
+            returned = null;
+        }
+    }
+}
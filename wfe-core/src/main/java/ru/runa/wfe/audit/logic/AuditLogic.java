@@ -18,6 +18,7 @@
 package ru.runa.wfe.audit.logic;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 import java.util.List;
 import org.springframework.beans.factory.annotation.Autowired;
 import ru.runa.wfe.audit.ProcessLog;
@@ -25,6 +26,7 @@ import ru.runa.wfe.audit.ProcessLogFilter;
 import ru.runa.wfe.audit.ProcessLogs;
 import ru.runa.wfe.audit.SystemLog;
 import ru.runa.wfe.audit.dao.ProcessLogDao;
+import ru.runa.wfe.audit.dao.ProcessLogIterator;
 import ru.runa.wfe.commons.logic.CommonLogic;
 import ru.runa.wfe.commons.logic.PresentationCompilerHelper;
 import ru.runa.wfe.execution.dao.NodeProcessDao;
@@ -59,19 +61,28 @@ public class AuditLogic extends CommonLogic {
         ru.runa.wfe.execution.Process process = processDao.getNotNull(filter.getProcessId());
         permissionDao.checkAllowed(user, Permission.LIST, process);
         ProcessLogs result = new ProcessLogs(filter.getProcessId());
-        List<ProcessLog> logs = processLogDao.getAll(filter);
+        List<ProcessLog> logs = loadProcessLogs(filter);
         result.addLogs(logs, filter.isIncludeSubprocessLogs());
         if (filter.isIncludeSubprocessLogs()) {
             for (ru.runa.wfe.execution.Process subprocess : nodeProcessDao.getSubprocessesRecursive(process)) {
                 ProcessLogFilter subprocessFilter = new ProcessLogFilter(subprocess.getId());
                 subprocessFilter.setSeverities(filter.getSeverities());
-                logs = processLogDao.getAll(subprocessFilter);
+                logs = loadProcessLogs(subprocessFilter);
                 result.addLogs(logs, filter.isIncludeSubprocessLogs());
             }
         }
         return result;
     }
 
+    /**
+     * Loads process logs via database cursor; loaded logs is detached from session to avoid session cache growth for huge histories.
+     */
+    private List<ProcessLog> loadProcessLogs(ProcessLogFilter filter) {
+        try (ProcessLogIterator logs = processLogDao.iterateAll(filter)) {
+            return Lists.newArrayList(logs);
+        }
+    }
+
     public Object getProcessLogValue(User user, Long logId) {
         Preconditions.checkNotNull(logId, "logId");
         ProcessLog processLog = processLogDao.getNotNull(logId);
@@ -1,15 +1,24 @@
 package ru.runa.wfe.commons;
 
 import groovy.lang.Binding;
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.GroovyCodeSource;
 import groovy.lang.GroovyShell;
+import groovy.lang.Script;
 
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.codehaus.groovy.GroovyExceptionInterface;
+import org.codehaus.groovy.runtime.InvokerHelper;
 
 import ru.runa.wfe.InternalApplicationException;
+import ru.runa.wfe.commons.cache.CacheStatistic;
+import ru.runa.wfe.commons.cache.StatisticCounter;
 import ru.runa.wfe.execution.dto.WfProcess;
 import ru.runa.wfe.lang.SwimlaneDefinition;
 import ru.runa.wfe.validation.ValidatorException;
@@ -18,18 +27,28 @@ import ru.runa.wfe.var.VariableDefinition;
 
 import com.google.common.base.Objects;
 import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 public class GroovyScriptExecutor implements ScriptExecutor {
     protected static final Log log = LogFactory.getLog(GroovyScriptExecutor.class);
+    private static final StatisticCounter statistic = CacheStatistic.registerCacheCounter("groovyScripts");
+    /**
+     * Compiled scripts classes by script text. Each script class is loaded by own class loader, so evicted classes may be unloaded.
+     */
+    private static final Cache<String, Class<?>> scriptClasses = CacheBuilder.newBuilder()
+            .maximumSize(SystemProperties.getGroovyScriptCacheSize()).build();
+    private static final AtomicInteger scriptNameCounter = new AtomicInteger();
 
     @Override
     public Map<String, Object> executeScript(VariableProvider variableProvider, String script) {
         try {
             GroovyScriptBinding binding = createBinding(variableProvider);
             binding.setVariable(GroovyScriptBinding.VARIABLE_PROVIDER_VARIABLE_NAME, variableProvider);
-            GroovyShell shell = new GroovyShell(ClassLoaderUtil.getExtensionClassLoader(), binding);
-            shell.evaluate(script);
+            createScript(script, binding).run();
             return binding.getAdjustedVariables();
         } catch (Exception e) {
             log.error("Groovy execution failed, script=" + script, e);
@@ -45,8 +64,7 @@ public class GroovyScriptExecutor implements ScriptExecutor {
         try {
             GroovyScriptBinding binding = createBinding(variableProvider);
             binding.setVariable(GroovyScriptBinding.VARIABLE_PROVIDER_VARIABLE_NAME, variableProvider);
-            GroovyShell shell = new GroovyShell(ClassLoaderUtil.getExtensionClassLoader(), binding);
-            return shell.evaluate(script);
+            return createScript(script, binding).run();
         } catch (ValidatorException e) {
             throw e;
         } catch (Exception e) {
@@ -62,6 +80,41 @@ public class GroovyScriptExecutor implements ScriptExecutor {
         return new GroovyScriptBinding(variableProvider);
     }
 
+    /**
+     * Creates script instance with binding. Script is compiled once and compiled class is reused while it is cached.
+     */
+    private static Script createScript(String script, Binding binding) throws Exception {
+        return InvokerHelper.createScript(getScriptClass(script), binding);
+    }
+
+    private static Class<?> getScriptClass(final String script) throws Exception {
+        Class<?> scriptClass = statistic.registerCacheGet(scriptClasses.getIfPresent(script));
+        if (scriptClass != null) {
+            return scriptClass;
+        }
+        try {
+            return scriptClasses.get(script, new Callable<Class<?>>() {
+
+                @Override
+                public Class<?> call() {
+                    return compile(script);
+                }
+            });
+        } catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+            Throwables.propagateIfInstanceOf(e.getCause(), Exception.class);
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    private static Class<?> compile(String script) {
+        long startTime = System.nanoTime();
+        GroovyClassLoader classLoader = new GroovyClassLoader(ClassLoaderUtil.getExtensionClassLoader());
+        String name = "Script" + scriptNameCounter.incrementAndGet() + ".groovy";
+        Class<?> scriptClass = classLoader.parseClass(new GroovyCodeSource(script, name, GroovyShell.DEFAULT_CODE_BASE), false);
+        statistic.registerCacheLoad(System.nanoTime() - startTime);
+        return scriptClass;
+    }
+
     public static class GroovyScriptBinding extends Binding {
         private final static String EXECUTION_CONTEXT_VARIABLE_NAME = "executionContext";
         private final static String VARIABLE_PROVIDER_VARIABLE_NAME = "variableProvider";
@@ -131,6 +131,13 @@ public class SystemProperties {
         return RESOURCES.getIntegerProperty("file.variable.local.storage.enableforfilesgreaterthan", 100000);
     }
 
+    /**
+     * Whether identical file contents in local file storage are stored once (keyed by SHA-256 digest) and shared by hard links.
+     */
+    public static boolean isLocalFileStorageContentAddressed() {
+        return RESOURCES.getBooleanProperty("file.variable.local.storage.content.addressed.enabled", false);
+    }
+
     public static String getStrongPasswordsRegexp() {
         return RESOURCES.getStringProperty("strong.passwords.regexp");
     }
@@ -226,6 +233,13 @@ public class SystemProperties {
         return RESOURCES.getBooleanProperty("upgrade.process.to.definition.version.enabled", true);
     }
 
+    /**
+     * Count of processes, handled in one transaction by administrative operations over processes (cancellation, deletion, upgrade).
+     */
+    public static int getProcessBatchChunkSize() {
+        return RESOURCES.getIntegerProperty("process.batch.chunk.size", 100);
+    }
+
     public static boolean isErrorEmailNotificationEnabled() {
         return getErrorEmailNotificationConfiguration() != null;
     }
@@ -280,6 +294,13 @@ public class SystemProperties {
         return RESOURCES.getMultipleStringProperty("freemarker.static.class.names");
     }
 
+    /**
+     * Names of caches, which store committed values serialized off-heap.
+     */
+    public static List<String> getOffHeapCacheNames() {
+        return RESOURCES.getMultipleStringProperty("cache.offheap.names");
+    }
+
     public static boolean setPermissionsToTemporaryGroups() {
         return RESOURCES.getBooleanProperty("temporary.groups.set.permissions", false);
     }
@@ -369,4 +390,89 @@ public class SystemProperties {
         return RESOURCES.getDateProperty("variables.invalid.default.values.allowed.before", new Date());
     }
 
-}
\ No newline at end of file
+    /**
+     * Threads count for expired jobs execution. Jobs of one process are always executed sequentially.
+     */
+    public static int getJobExecutorThreadsCount() {
+        return RESOURCES.getIntegerProperty("job.executor.threads", 4);
+    }
+
+    /**
+     * Max.number of expired jobs, claimed for execution at once.
+     */
+    public static int getJobExecutorBatchSize() {
+        return RESOURCES.getIntegerProperty("job.executor.batch.size", 100);
+    }
+
+    /**
+     * Whether process logs are buffered per transaction and written in batch before commit.
+     */
+    public static boolean isProcessLogBufferEnabled() {
+        return RESOURCES.getBooleanProperty("process.log.buffer.enabled", false);
+    }
+
+    /**
+     * Max.number of buffered process logs in transaction; buffer is written to database when this size is reached.
+     */
+    public static int getProcessLogBufferSize() {
+        return RESOURCES.getIntegerProperty("process.log.buffer.size", 500);
+    }
+
+    /**
+     * JDBC fetch size for process logs, read by database cursor.
+     */
+    public static int getProcessLogFetchSize() {
+        return RESOURCES.getIntegerProperty("process.log.fetch.size", 1000);
+    }
+
+    /**
+     * Whether all process variables are loaded at once on first variable access in {@link ru.runa.wfe.execution.ExecutionContext}.
+     */
+    public static boolean isVariableWorkingSetEnabled() {
+        return RESOURCES.getBooleanProperty("variables.working.set.enabled", true);
+    }
+
+    /**
+     * Whether permissions on secured objects are cached as bitmasks and checked in memory. Cache is local to JVM and is not invalidated by
+     * permission changes on other cluster nodes, so it must be enabled only for single node installations.
+     */
+    public static boolean isPermissionCacheEnabled() {
+        return RESOURCES.getBooleanProperty("permission.cache.enabled", false);
+    }
+
+    /**
+     * Maximum count of secured objects in permissions cache.
+     */
+    public static int getPermissionCacheSize() {
+        return RESOURCES.getIntegerProperty("permission.cache.size", 100000);
+    }
+
+    /**
+     * Maximum count of executors in task list index.
+     */
+    public static int getTaskListIndexSize() {
+        return RESOURCES.getIntegerProperty("task.list.index.size", 100000);
+    }
+
+    /**
+     * Maximum total size (in kilobytes) of process files in parsed process definitions cache.
+     */
+    public static long getDefinitionCacheMaxSizeKb() {
+        return RESOURCES.getLongProperty("definition.cache.max.size.kb", 512 * 1024);
+    }
+
+    /**
+     * Maximum count of compiled groovy scripts in cache.
+     */
+    public static int getGroovyScriptCacheSize() {
+        return RESOURCES.getIntegerProperty("groovy.script.cache.size", 1000);
+    }
+
+    /**
+     * Maximum count of parsed freemarker templates in cache.
+     */
+    public static int getFreemarkerTemplateCacheSize() {
+        return RESOURCES.getIntegerProperty("freemarker.template.cache.size", 1000);
+    }
+
+}
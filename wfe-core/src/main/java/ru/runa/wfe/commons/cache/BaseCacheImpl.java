@@ -24,6 +24,8 @@ import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import ru.runa.wfe.commons.SystemProperties;
+
 import com.google.common.collect.Queues;
 
 /**
@@ -103,7 +105,7 @@ public abstract class BaseCacheImpl implements CacheImplementation {
      * @return Cache to store cached values.
      */
     protected <K extends Serializable, V extends Serializable> Cache<K, V> createCache(String cacheName) {
-        Cache<K, V> result = new CacheStatisticProxy<K, V>(new EhCacheSupport<K, V>(cacheName), cacheName);
+        Cache<K, V> result = new CacheStatisticProxy<K, V>(createCacheSupport(cacheName, false), cacheName);
         caches.add(result);
         return result;
     }
@@ -122,8 +124,18 @@ public abstract class BaseCacheImpl implements CacheImplementation {
      * @return Cache to store cached values.
      */
     protected <K extends Serializable, V extends Serializable> Cache<K, V> createCache(String cacheName, boolean infiniteLifeTime) {
-        Cache<K, V> result = new CacheStatisticProxy<K, V>(new EhCacheSupport<K, V>(cacheName, infiniteLifeTime), cacheName);
+        Cache<K, V> result = new CacheStatisticProxy<K, V>(createCacheSupport(cacheName, infiniteLifeTime), cacheName);
         caches.add(result);
         return result;
     }
+
+    /**
+     * Creates cache storage: off-heap, if configured for cache name, or ehcache.
+     */
+    private <K extends Serializable, V extends Serializable> Cache<K, V> createCacheSupport(String cacheName, boolean infiniteLifeTime) {
+        if (SystemProperties.getOffHeapCacheNames().contains(cacheName)) {
+            return new OffHeapCacheSupport<K, V>(cacheName);
+        }
+        return new EhCacheSupport<K, V>(cacheName, infiniteLifeTime);
+    }
 }
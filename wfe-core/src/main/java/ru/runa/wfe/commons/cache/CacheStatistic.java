@@ -84,7 +84,12 @@ public class CacheStatistic {
             logMessage.append("Hit on contains: ").append(counter.getHitOnContainsValue()).append(" (").
                 append(getPerSecond(counter.getHitOnContainsValue(), elapsedMillis)).append(" per second); ");
             logMessage.append("Miss on contains: ").append(counter.getMissOnContainsValue()).append(" (").
-                append(getPerSecond(counter.getMissOnContainsValue(), elapsedMillis)).append(" per second).\n");
+                append(getPerSecond(counter.getMissOnContainsValue(), elapsedMillis)).append(" per second)");
+            if (counter.getLoadValue() > 0) {
+                logMessage.append("; Load: ").append(counter.getLoadValue()).append(" (").
+                    append(String.format("%.2f", counter.getLoadTimeValue() / 1000000.0 / counter.getLoadValue())).append(" milliseconds average)");
+            }
+            logMessage.append(".\n");
         }
         if (!statisticSnapshot.isEmpty()) {
             log.debug(logMessage);
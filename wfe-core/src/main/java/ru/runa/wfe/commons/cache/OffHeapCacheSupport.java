@@ -0,0 +1,235 @@
+/*
+ * This file is part of the RUNA WFE project.
+ * 
+ * This program is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License 
+ * as published by the Free Software Foundation; version 2.1 
+ * of the License. 
+ * 
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU Lesser General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with this program; if not, write to the Free Software 
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+package ru.runa.wfe.commons.cache;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang.SerializationException;
+import org.apache.commons.lang.SerializationUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Cache component, which stores committed values serialized in direct (off-heap) memory buffers. Large caches do not occupy java heap and are not
+ * traversed by garbage collector; every {@link #get(Serializable)} returns new copy of cached value.
+ * <p/>
+ * Until {@link #commitCache()} values are stored by reference, as in {@link EhCacheSupport}, so cache may be filled by modifying cached values.
+ * After commit values must not be modified by reference. Values, which can't be serialized, are stored by reference. Cached elements lifetime is
+ * infinite; direct memory is limited by -XX:MaxDirectMemorySize JVM option.
+ * 
+ * @see ru.runa.wfe.commons.SystemProperties#getOffHeapCacheNames()
+ */
+class OffHeapCacheSupport<K extends Serializable, V extends Serializable> implements Cache<K, V> {
+    private static final Log log = LogFactory.getLog(OffHeapCacheSupport.class);
+
+    /**
+     * Cached values: values itself before commit and {@link SerializedValue} after.
+     */
+    private final ConcurrentHashMap<K, Object> storage = new ConcurrentHashMap<K, Object>();
+
+    /**
+     * Cache name, used for logging.
+     */
+    private final String cacheName;
+
+    /**
+     * Total size of serialized values, stored off-heap.
+     */
+    private final AtomicLong offHeapSize = new AtomicLong();
+
+    /**
+     * Stored instead of null values (storage does not accept nulls), so cached null is distinguished from missing element.
+     */
+    private static final Object NULL_VALUE = new Object();
+
+    /**
+     * Flag equals true, if cache is committed and values must be serialized.
+     */
+    private volatile boolean committed;
+
+    /**
+     * Creates caching component.
+     * 
+     * @param cacheName
+     *            Cache name.
+     */
+    public OffHeapCacheSupport(String cacheName) {
+        this.cacheName = cacheName;
+    }
+
+    /**
+     * Commit cached elements. All currently cached values are moved off-heap.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void commitCache() {
+        committed = true;
+        for (Map.Entry<K, Object> entry : storage.entrySet()) {
+            if (!(entry.getValue() instanceof SerializedValue) && entry.getValue() != NULL_VALUE) {
+                storage.replace(entry.getKey(), entry.getValue(), toStored((V) entry.getValue()));
+            }
+        }
+        log.debug("Cache " + cacheName + " committed, " + storage.size() + " elements, " + offHeapSize.get() + " bytes off-heap");
+    }
+
+    /**
+     * Try to get element from cache.
+     * 
+     * @param key
+     *            Key to load cached object.
+     * @return Cached element or null, if not found.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(K key) {
+        Object stored = storage.get(key);
+        if (stored instanceof SerializedValue) {
+            return (V) ((SerializedValue) stored).deserialize();
+        }
+        return stored == NULL_VALUE ? null : (V) stored;
+    }
+
+    /**
+     * Check, if element is present into cache.
+     * 
+     * @param key
+     *            Key to check cached object.
+     * @return true, if object with specified key cached and false otherwise.
+     */
+    @Override
+    public boolean contains(K key) {
+        return storage.containsKey(key);
+    }
+
+    /**
+     * Puts value to cache.
+     * 
+     * @param key
+     *            Cached object key.
+     * @param value
+     *            Cached object.
+     */
+    @Override
+    public void put(K key, V value) {
+        if (value == null) {
+            onRemoved(storage.put(key, NULL_VALUE));
+            return;
+        }
+        onRemoved(storage.put(key, committed ? toStored(value) : value));
+    }
+
+    /**
+     * Add all elements from collection to cache.
+     * 
+     * @param collection
+     *            Collection of objects to add.
+     */
+    @Override
+    public void putAll(Map<K, V> collection) {
+        for (Map.Entry<K, V> newValue : collection.entrySet()) {
+            put(newValue.getKey(), newValue.getValue());
+        }
+    }
+
+    /**
+     * Removes cached object with specified key.
+     * 
+     * @param key
+     *            Cached object key.
+     * @return true, if element removed from cache and false if it was not found in the cache.
+     */
+    @Override
+    public boolean remove(K key) {
+        Object removed = storage.remove(key);
+        onRemoved(removed);
+        return removed != null;
+    }
+
+    /**
+     * Clear cache by removing all cached data.
+     */
+    @Override
+    public void clear() {
+        for (K key : storage.keySet()) {
+            remove(key);
+        }
+    }
+
+    /**
+     * Returns {@linkplain Iterable} to iterate other cached objects keys.
+     * 
+     * @return
+     */
+    @Override
+    public Iterable<K> keySet() {
+        return storage.keySet();
+    }
+
+    /**
+     * Returns total size of serialized values, stored off-heap.
+     */
+    public long getOffHeapSize() {
+        return offHeapSize.get();
+    }
+
+    private Object toStored(V value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes;
+        try {
+            bytes = SerializationUtils.serialize(value);
+        } catch (SerializationException e) {
+            log.warn("Unable to store " + value.getClass() + " off-heap in cache " + cacheName + ": " + e);
+            return value;
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes);
+        offHeapSize.addAndGet(bytes.length);
+        return new SerializedValue(buffer);
+    }
+
+    private void onRemoved(Object stored) {
+        if (stored instanceof SerializedValue) {
+            offHeapSize.addAndGet(-((SerializedValue) stored).buffer.capacity());
+        }
+    }
+
+    /**
+     * Serialized value in direct buffer. Buffer memory is released when value is garbage collected.
+     */
+    private static class SerializedValue {
+        private final ByteBuffer buffer;
+
+        private SerializedValue(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        private Object deserialize() {
+            byte[] bytes = new byte[buffer.capacity()];
+            ByteBuffer source = buffer.duplicate();
+            source.clear();
+            source.get(bytes);
+            return SerializationUtils.deserialize(bytes);
+        }
+    }
+}
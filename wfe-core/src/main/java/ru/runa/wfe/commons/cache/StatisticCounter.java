@@ -50,6 +50,14 @@ public class StatisticCounter {
      * Counter for cache commit events.
      */
     private final AtomicInteger commitCounter = new AtomicInteger();
+    /**
+     * Counter for values loading (not from cache) events.
+     */
+    private final AtomicInteger loadCounter = new AtomicInteger();
+    /**
+     * Total time of values loading (not from cache) in nanoseconds.
+     */
+    private final AtomicLong loadTimeCounter = new AtomicLong();
 
     /**
      * Counter creation date. 
@@ -82,6 +90,8 @@ public class StatisticCounter {
         missOnContainsCounter.set(counter.missOnContainsCounter.getAndSet(0));
         rebuildCounter.set(counter.rebuildCounter.getAndSet(0));
         commitCounter.set(counter.commitCounter.getAndSet(0));
+        loadCounter.set(counter.loadCounter.getAndSet(0));
+        loadTimeCounter.set(counter.loadTimeCounter.getAndSet(0));
         creationDate = System.currentTimeMillis();
         resetDate = new AtomicLong(counter.resetDate.getAndSet(creationDate));
     }
@@ -128,6 +138,15 @@ public class StatisticCounter {
         commitCounter.incrementAndGet();
     }
 
+    /**
+     * Register value loading (not from cache) event.
+     * @param nanos Loading time in nanoseconds.
+     */
+    public void registerCacheLoad(long nanos) {
+        loadCounter.incrementAndGet();
+        loadTimeCounter.addAndGet(nanos);
+    }
+
     /**
      * Register get operation from cache. Fires miss or hit on get event depends on loaded from cache value.
      * @param <V> Type of values, loaded from cache.
@@ -199,6 +218,20 @@ public class StatisticCounter {
         return commitCounter.get();
     }
 
+    /**
+     * @return Values loading (not from cache) counts.
+     */
+    public int getLoadValue() {
+        return loadCounter.get();
+    }
+
+    /**
+     * @return Total time of values loading (not from cache) in nanoseconds.
+     */
+    public long getLoadTimeValue() {
+        return loadTimeCounter.get();
+    }
+
     /**
      * @return Counter creation date.
      */
@@ -0,0 +1,19 @@
+package ru.runa.wfe.commons.dbpatch.impl;
+
+import java.util.List;
+
+import ru.runa.wfe.commons.dbpatch.DbPatch;
+
+/**
+ * Index for subprocess tree queries by hierarchy ids prefix.
+ */
+public class AddProcessTreePathIndexPatch extends DbPatch {
+
+    @Override
+    protected List<String> getDDLQueriesBefore() {
+        List<String> sql = super.getDDLQueriesBefore();
+        sql.add(getDDLCreateIndex("BPM_PROCESS", "IX_PROCESS_TREE_PATH", "TREE_PATH"));
+        return sql;
+    }
+
+}
@@ -4,12 +4,17 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import com.google.common.base.Charsets;
 import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 import freemarker.core.Environment;
 import freemarker.template.Configuration;
@@ -17,9 +22,19 @@ import freemarker.template.DefaultObjectWrapper;
 import freemarker.template.Template;
 import freemarker.template.TemplateException;
 import freemarker.template.TemplateExceptionHandler;
+import ru.runa.wfe.commons.SystemProperties;
+import ru.runa.wfe.commons.cache.CacheStatistic;
+import ru.runa.wfe.commons.cache.StatisticCounter;
 
+/**
+ * Processes freemarker templates. Parsed templates are cached by template text, so repeated processing of same template (form, email, task
+ * description) does not parse it again.
+ */
 public class FreemarkerProcessor {
     private static final Log log = LogFactory.getLog(FreemarkerProcessor.class);
+    private static final StatisticCounter statistic = CacheStatistic.registerCacheCounter("freemarkerTemplates");
+    private static final Cache<String, Template> templates = CacheBuilder.newBuilder()
+            .maximumSize(SystemProperties.getFreemarkerTemplateCacheSize()).build();
 
     private final static Configuration cfg = new Configuration();
     static {
@@ -33,7 +48,7 @@ public class FreemarkerProcessor {
             if (ftlTemplate == null) {
                 return null;
             }
-            Template template = new Template("", new StringReader(ftlTemplate), cfg, Charsets.UTF_8.name());
+            Template template = getTemplate(ftlTemplate);
             StringWriter out = new StringWriter();
             template.process(model, out);
             out.flush();
@@ -44,6 +59,28 @@ public class FreemarkerProcessor {
         }
     }
 
+    private static Template getTemplate(final String ftlTemplate) throws Exception {
+        Template template = statistic.registerCacheGet(templates.getIfPresent(ftlTemplate));
+        if (template != null) {
+            return template;
+        }
+        try {
+            return templates.get(ftlTemplate, new Callable<Template>() {
+
+                @Override
+                public Template call() throws IOException {
+                    long startTime = System.nanoTime();
+                    Template template = new Template("", new StringReader(ftlTemplate), cfg, Charsets.UTF_8.name());
+                    statistic.registerCacheLoad(System.nanoTime() - startTime);
+                    return template;
+                }
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwables.propagateIfInstanceOf(e.getCause(), Exception.class);
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
     private static class CustomExceptionHandler implements TemplateExceptionHandler {
 
         @Override
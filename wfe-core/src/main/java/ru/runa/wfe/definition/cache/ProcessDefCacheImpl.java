@@ -17,47 +17,87 @@
  */
 package ru.runa.wfe.definition.cache;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.hibernate.Hibernate;
 import org.hibernate.proxy.HibernateProxy;
 
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Maps;
+
+import ru.runa.wfe.commons.SystemProperties;
 import ru.runa.wfe.commons.cache.BaseCacheImpl;
 import ru.runa.wfe.commons.cache.Cache;
 import ru.runa.wfe.commons.cache.CacheImplementation;
+import ru.runa.wfe.commons.cache.CacheStatistic;
 import ru.runa.wfe.commons.cache.Change;
 import ru.runa.wfe.commons.cache.ChangedObjectParameter;
+import ru.runa.wfe.commons.cache.StatisticCounter;
 import ru.runa.wfe.definition.DefinitionDoesNotExistException;
 import ru.runa.wfe.definition.Deployment;
 import ru.runa.wfe.definition.dao.DeploymentDao;
 import ru.runa.wfe.definition.par.ProcessArchive;
 import ru.runa.wfe.lang.ProcessDefinition;
 
+/**
+ * Cache of parsed process definitions. Each process archive is parsed only once: concurrent requests for not cached definition wait for single
+ * parsing. Cache size is limited by total size of process files; least recently used definitions are evicted first.
+ * <p/>
+ * Parsed definitions are not stored in {@link BaseCacheImpl} managed caches: ehcache and off-heap storages can't limit cache by definition
+ * weight. Definitions are invalidated directly on deployment change; statistic is registered under {@link #definitionIdToDefinitionName}.
+ */
 class ProcessDefCacheImpl extends BaseCacheImpl implements ManageableProcessDefinitionCache {
 
     public static final String definitionIdToDefinitionName = "ru.runa.wfe.definition.cache.definitionIdToDefinition";
     public static final String definitionNameToLatestDefinitionName = "ru.runa.wfe.definition.cache.definitionNameToLatestDefinition";
 
-    private final Cache<Long, ProcessDefinition> definitionIdToDefinition;
+    private static final StatisticCounter statistic = CacheStatistic.registerCacheCounter(definitionIdToDefinitionName);
+
+    private final com.google.common.cache.Cache<Long, ProcessDefinition> definitionIdToDefinition;
     private final Cache<String, Long> definitionNameToId;
+    /**
+     * Definitions, parsed now. Concurrent requests for parsing definition wait for parsing completion.
+     */
+    private final ConcurrentMap<Long, FutureTask<ProcessDefinition>> parsingDefinitions;
+    /**
+     * Incremented on every deployment change; parsed definition (or loaded latest definition id) is not cached if version is changed during
+     * loading.
+     */
+    private final AtomicLong version;
 
     private final AtomicBoolean isLocked = new AtomicBoolean(false);
 
     public ProcessDefCacheImpl() {
-        definitionIdToDefinition = createCache(definitionIdToDefinitionName);
+        definitionIdToDefinition = CacheBuilder.newBuilder()
+                .maximumWeight(SystemProperties.getDefinitionCacheMaxSizeKb())
+                .weigher(new ProcessDefinitionWeigher())
+                .build();
         definitionNameToId = createCache(definitionNameToLatestDefinitionName);
+        parsingDefinitions = Maps.newConcurrentMap();
+        version = new AtomicLong();
     }
 
     private ProcessDefCacheImpl(ProcessDefCacheImpl source) {
         definitionIdToDefinition = source.definitionIdToDefinition;
         definitionNameToId = source.definitionNameToId;
+        parsingDefinitions = source.parsingDefinitions;
+        version = source.version;
     }
 
-    public synchronized void onDeploymentChange(Deployment deployment, Change change) {
+    public void onDeploymentChange(Deployment deployment, Change change) {
         isLocked.set(true);
+        version.incrementAndGet();
         // TODO different calc depending on change
         if (deployment.getId() != null) {
-            definitionIdToDefinition.remove(deployment.getId());
+            parsingDefinitions.remove(deployment.getId());
+            definitionIdToDefinition.invalidate(deployment.getId());
         }
         definitionNameToId.remove(deployment.getName());
     }
@@ -71,40 +111,72 @@ class ProcessDefCacheImpl extends BaseCacheImpl implements ManageableProcessDefi
     }
 
     @Override
-    public ProcessDefinition getDefinition(DeploymentDao deploymentDao, Long definitionId) throws DefinitionDoesNotExistException {
-        ProcessDefinition processDefinition = null;
-        // synchronized (this) {
-        processDefinition = definitionIdToDefinition.get(definitionId);
+    public ProcessDefinition getDefinition(final DeploymentDao deploymentDao, final Long definitionId) throws DefinitionDoesNotExistException {
+        ProcessDefinition processDefinition = statistic.registerCacheGet(definitionIdToDefinition.getIfPresent(definitionId));
         if (processDefinition != null) {
             return processDefinition;
         }
-        // }
+        FutureTask<ProcessDefinition> parsing = parsingDefinitions.get(definitionId);
+        if (parsing == null) {
+            final long loadVersion = version.get();
+            FutureTask<ProcessDefinition> newParsing = new FutureTask<ProcessDefinition>(new Callable<ProcessDefinition>() {
+
+                @Override
+                public ProcessDefinition call() {
+                    return parseDefinition(deploymentDao, definitionId, loadVersion);
+                }
+            });
+            parsing = parsingDefinitions.putIfAbsent(definitionId, newParsing);
+            if (parsing == null) {
+                parsing = newParsing;
+                try {
+                    newParsing.run();
+                } finally {
+                    parsingDefinitions.remove(definitionId, newParsing);
+                }
+            }
+        }
+        try {
+            return parsing.get();
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Throwables.propagate(e);
+        }
+    }
+
+    private ProcessDefinition parseDefinition(DeploymentDao deploymentDao, Long definitionId, long loadVersion) {
+        long startTime = System.nanoTime();
         Deployment deployment = deploymentDao.getNotNull(definitionId);
         Hibernate.initialize(deployment);
         if (deployment instanceof HibernateProxy) {
             deployment = (Deployment) (((HibernateProxy) deployment).getHibernateLazyInitializer().getImplementation());
         }
         ProcessArchive archive = new ProcessArchive(deployment);
-        processDefinition = archive.parseProcessDefinition();
-        // synchronized (this) {
-        definitionIdToDefinition.put(definitionId, processDefinition);
-        // }
+        ProcessDefinition processDefinition = archive.parseProcessDefinition();
+        statistic.registerCacheLoad(System.nanoTime() - startTime);
+        if (version.get() == loadVersion) {
+            definitionIdToDefinition.put(definitionId, processDefinition);
+            if (version.get() != loadVersion) {
+                definitionIdToDefinition.invalidate(definitionId);
+            }
+        }
         return processDefinition;
     }
 
     @Override
     public ProcessDefinition getLatestDefinition(DeploymentDao deploymentDao, String definitionName) {
-        Long definitionId = null;
-        // synchronized (this) {
-        definitionId = definitionNameToId.get(definitionName);
+        Long definitionId = definitionNameToId.get(definitionName);
         if (definitionId != null) {
             return getDefinition(deploymentDao, definitionId);
         }
-        // }
+        long loadVersion = version.get();
         definitionId = deploymentDao.findLatestDeployment(definitionName).getId();
-        synchronized (this) {
-            if (!isLocked.get()) {
-                definitionNameToId.put(definitionName, definitionId);
+        if (!isLocked.get() && version.get() == loadVersion) {
+            definitionNameToId.put(definitionName, definitionId);
+            if (isLocked.get() || version.get() != loadVersion) {
+                definitionNameToId.remove(definitionName);
             }
         }
         return getDefinition(deploymentDao, definitionId);
@@ -124,4 +196,19 @@ class ProcessDefCacheImpl extends BaseCacheImpl implements ManageableProcessDefi
         log.error("Unexpected object " + changedObject.object);
         return false;
     }
+
+    /**
+     * Weights parsed definition as total size of process files in kilobytes.
+     */
+    private static class ProcessDefinitionWeigher implements Weigher<Long, ProcessDefinition> {
+
+        @Override
+        public int weigh(Long definitionId, ProcessDefinition processDefinition) {
+            long size = 0;
+            for (byte[] data : processDefinition.getProcessFiles().values()) {
+                size += data.length;
+            }
+            return (int) Math.min(Integer.MAX_VALUE, size / 1024 + 1);
+        }
+    }
 }
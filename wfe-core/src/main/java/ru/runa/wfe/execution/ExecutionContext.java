@@ -77,6 +77,10 @@ public class ExecutionContext {
     private final Map<String, Object> transientVariables = Maps.newHashMap();
 
     private final VariableLoader variableLoader;
+    /**
+     * Variable loader with process variables working set; null, if variables loading via {@link VariableDao} is disabled.
+     */
+    private final VariableLoaderDaoFallback variableWorkingSet;
     /**
      * This component is used for loading variables with subprocess variables state support.
      */
@@ -110,9 +114,11 @@ public class ExecutionContext {
         Preconditions.checkNotNull(token, "token");
         applicationContext.getAutowireCapableBeanFactory().autowireBean(this);
         if (disableVariableDaoLoading) {
+            this.variableWorkingSet = null;
             this.variableLoader = new VariableLoaderFromMap(loadedVariables);
         } else {
-            this.variableLoader = new VariableLoaderDaoFallback(variableDao, loadedVariables);
+            this.variableWorkingSet = new VariableLoaderDaoFallback(variableDao, loadedVariables);
+            this.variableLoader = variableWorkingSet;
         }
         this.baseProcessVariableLoader = new BaseProcessVariableLoader(variableLoader, getProcessDefinition(), getProcess());
     }
@@ -349,6 +355,9 @@ public class ExecutionContext {
                     + " variable value is " + value + converterStr);
             variableDao.delete(variable);
             variableDao.flushPendingChanges();
+            if (variableWorkingSet != null) {
+                variableWorkingSet.onVariableDeleted(variable);
+            }
             resultingVariableLog = new VariableDeleteLog(variable);
             variable = null;
         }
@@ -373,6 +382,9 @@ public class ExecutionContext {
                     variable = variableCreator.create(token.getProcess(), variableDefinition, value);
                     resultingVariableLog = variable.setValue(this, value, variableDefinition);
                     variableDao.create(variable);
+                    if (variableWorkingSet != null) {
+                        variableWorkingSet.onVariableCreated(variable);
+                    }
                 }
             }
         } else {
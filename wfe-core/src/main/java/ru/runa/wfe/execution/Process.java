@@ -136,6 +136,7 @@ public class Process extends SecuredObjectBase {
     }
 
     @Column(name = "TREE_PATH", length = 1024)
+    @Index(name = "IX_PROCESS_TREE_PATH")
     public String getHierarchyIds() {
         return hierarchyIds;
     }
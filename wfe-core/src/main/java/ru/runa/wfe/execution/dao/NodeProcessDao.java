@@ -7,6 +7,7 @@ import org.springframework.stereotype.Component;
 import ru.runa.wfe.commons.dao.GenericDao;
 import ru.runa.wfe.execution.NodeProcess;
 import ru.runa.wfe.execution.Process;
+import ru.runa.wfe.execution.QProcess;
 import ru.runa.wfe.execution.QNodeProcess;
 import ru.runa.wfe.execution.Token;
 
@@ -51,13 +52,20 @@ public class NodeProcessDao extends GenericDao<NodeProcess> {
         return result;
     }
 
+    /**
+     * Returns all subprocesses of process tree with single query by process hierarchy ids; parent processes precede their subprocesses.
+     */
     public List<Process> getSubprocessesRecursive(Process process) {
-        List<Process> result = Lists.newArrayList();
-        for (Process subprocess : getSubprocesses(process)) {
-            result.add(subprocess);
-            result.addAll(getSubprocessesRecursive(subprocess));
+        if (process.getHierarchyIds() == null) {
+            List<Process> result = Lists.newArrayList();
+            for (Process subprocess : getSubprocesses(process)) {
+                result.add(subprocess);
+                result.addAll(getSubprocessesRecursive(subprocess));
+            }
+            return result;
         }
-        return result;
+        QProcess p = QProcess.process;
+        return queryFactory.selectFrom(p).where(p.hierarchyIds.startsWith(process.getHierarchyIds() + "/")).orderBy(p.id.asc()).fetch();
     }
 
     public List<Process> getSubprocesses(Token token) {
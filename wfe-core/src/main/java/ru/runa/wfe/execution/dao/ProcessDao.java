@@ -55,7 +55,23 @@ public class ProcessDao extends GenericDao<Process> {
 
     public List<Process> getProcesses(final ProcessFilter filter) {
         QProcess p = QProcess.process;
-        JPQLQuery<Process> q = queryFactory.selectFrom(p).where();
+        JPQLQuery<Process> q = queryFactory.selectFrom(p);
+        applyFilter(q, filter);
+        return q.fetch();
+    }
+
+    /**
+     * Returns identifiers of processes, matched by filter, in ascending order.
+     */
+    public List<Long> getProcessIds(final ProcessFilter filter) {
+        QProcess p = QProcess.process;
+        JPQLQuery<Long> q = queryFactory.select(p.id).from(p).orderBy(p.id.asc());
+        applyFilter(q, filter);
+        return q.fetch();
+    }
+
+    private void applyFilter(JPQLQuery<?> q, ProcessFilter filter) {
+        QProcess p = QProcess.process;
         if (filter.getDefinitionName() != null) {
             q.where(p.deployment.name.eq(filter.getDefinitionName()));
         }
@@ -89,7 +105,6 @@ public class ProcessDao extends GenericDao<Process> {
         if (filter.getFailedOnly()) {
             q.where(p.executionStatus.eq(ExecutionStatus.FAILED));
         }
-        return q.fetch();
     }
 
     @Override
@@ -1,8 +1,10 @@
 package ru.runa.wfe.execution.dao;
 
+import com.google.common.collect.Lists;
 import java.util.Collection;
 import java.util.List;
 import org.springframework.stereotype.Component;
+import ru.runa.wfe.commons.SystemProperties;
 import ru.runa.wfe.commons.dao.GenericDao;
 import ru.runa.wfe.execution.ExecutionStatus;
 import ru.runa.wfe.execution.QToken;
@@ -28,6 +30,15 @@ public class TokenDao extends GenericDao<Token> {
         return queryFactory.selectFrom(t).where(t.process.eq(process).and(t.executionStatus.ne(ExecutionStatus.ENDED))).fetch();
     }
 
+    public List<Token> findByProcessesAndExecutionStatusIsNotEnded(List<ru.runa.wfe.execution.Process> processes) {
+        List<Token> result = Lists.newArrayList();
+        QToken t = QToken.token;
+        for (List<ru.runa.wfe.execution.Process> processesPart : Lists.partition(processes, SystemProperties.getDatabaseParametersCount())) {
+            result.addAll(queryFactory.selectFrom(t).where(t.process.in(processesPart).and(t.executionStatus.ne(ExecutionStatus.ENDED))).fetch());
+        }
+        return result;
+    }
+
     public List<Token> findByProcessAndExecutionStatus(ru.runa.wfe.execution.Process process, ExecutionStatus status) {
         QToken t = QToken.token;
         return queryFactory.selectFrom(t).where(t.process.eq(process).and(t.executionStatus.eq(status))).fetch();
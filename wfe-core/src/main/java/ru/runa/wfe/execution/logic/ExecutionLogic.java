@@ -30,10 +30,10 @@ import ru.runa.wfe.ConfigurationException;
 import ru.runa.wfe.InternalApplicationException;
 import ru.runa.wfe.audit.AdminActionLog;
 import ru.runa.wfe.audit.ProcessActivateLog;
-import ru.runa.wfe.audit.ProcessLog;
 import ru.runa.wfe.audit.ProcessLogFilter;
 import ru.runa.wfe.audit.ProcessLogs;
 import ru.runa.wfe.audit.ProcessSuspendLog;
+import ru.runa.wfe.audit.dao.ProcessLogIterator;
 import ru.runa.wfe.commons.SystemProperties;
 import ru.runa.wfe.commons.TransactionListeners;
 import ru.runa.wfe.commons.TypeConversionUtil;
@@ -98,6 +98,8 @@ public class ExecutionLogic extends WfCommonLogic {
     private ExecutorLogic executorLogic;
     @Autowired
     private NodeAsyncExecutor nodeAsyncExecutor;
+    @Autowired
+    private ProcessBatchExecutor processBatchExecutor;
 
     public void cancelProcess(User user, Long processId) throws ProcessDoesNotExistException {
         ProcessFilter filter = new ProcessFilter();
@@ -115,23 +117,66 @@ public class ExecutionLogic extends WfCommonLogic {
         return toWfProcesses(data, batchPresentation.getDynamicFieldsToDisplay(true));
     }
 
-    public void deleteProcesses(User user, final ProcessFilter filter) {
-        List<Process> processes = getProcessesInternal(user, filter);
-        // TODO add ProcessPermission.DELETE_PROCESS
-        processes = filterSecuredObject(user, processes, Permission.CANCEL);
-        for (Process process : processes) {
-            deleteProcess(user, process);
-        }
+    public void deleteProcesses(final User user, final ProcessFilter filter) {
+        executeInChunks("Processes deletion", processDao.getProcessIds(filter), new ProcessBatchExecutor.Operation() {
+
+            @Override
+            public void execute(List<Long> processIds) {
+                List<Process> processes = filterSecuredObject(user, processDao.find(processIds), Permission.LIST);
+                // TODO add ProcessPermission.DELETE_PROCESS
+                processes = filterSecuredObject(user, processes, Permission.CANCEL);
+                for (Process process : processes) {
+                    deleteProcess(user, process);
+                }
+            }
+        });
     }
 
-    public void cancelProcesses(User user, final ProcessFilter filter) {
-        List<Process> processes = getProcessesInternal(user, filter);
-        processes = filterSecuredObject(user, processes, Permission.CANCEL);
-        for (Process process : processes) {
-            ProcessDefinition processDefinition = getDefinition(process);
-            ExecutionContext executionContext = new ExecutionContext(processDefinition, process);
-            process.end(executionContext, user.getActor());
-            log.info(process + " was cancelled by " + user);
+    public void cancelProcesses(final User user, final ProcessFilter filter) {
+        executeInChunks("Processes cancellation", processDao.getProcessIds(filter), new ProcessBatchExecutor.Operation() {
+
+            @Override
+            public void execute(List<Long> processIds) {
+                List<Process> processes = filterSecuredObject(user, processDao.find(processIds), Permission.LIST);
+                processes = filterSecuredObject(user, processes, Permission.CANCEL);
+                for (Process process : processes) {
+                    ProcessDefinition processDefinition = getDefinition(process);
+                    ExecutionContext executionContext = new ExecutionContext(processDefinition, process);
+                    process.end(executionContext, user.getActor());
+                    log.info(process + " was cancelled by " + user);
+                }
+            }
+        });
+    }
+
+    /**
+     * Executes operation over processes. Large set of processes is handled by chunks of {@link SystemProperties#getProcessBatchChunkSize()}
+     * processes, each chunk in separate transaction, so processes, handled before failure, stay handled. Operations select processes by criteria,
+     * which is not matched after operation, so interrupted operation is continued by repeated call.
+     * <p/>
+     * Caller transaction (service call) stays open while all chunks are handled, so long operation may exceed its timeout after most chunks are
+     * committed. Failure is reported with count of committed chunks; committed chunks are not rolled back.
+     */
+    private void executeInChunks(String operationName, List<Long> processIds, ProcessBatchExecutor.Operation operation) {
+        int chunkSize = SystemProperties.getProcessBatchChunkSize();
+        if (processIds.size() <= chunkSize) {
+            operation.execute(processIds);
+            return;
+        }
+        List<List<Long>> chunks = Lists.partition(processIds, chunkSize);
+        int processedCount = 0;
+        int chunkIndex = 0;
+        for (List<Long> chunk : chunks) {
+            try {
+                processBatchExecutor.executeChunk(operation, chunk);
+            } catch (RuntimeException e) {
+                throw new InternalApplicationException(operationName + " failed: " + chunkIndex + " of " + chunks.size() + " chunks ("
+                        + processedCount + " of " + processIds.size() + " processes) are committed", e);
+            }
+            chunkIndex++;
+            processedCount += chunk.size();
+            log.info(operationName + ": " + chunkIndex + " of " + chunks.size() + " chunks (" + processedCount + " of " + processIds.size()
+                    + " processes) handled");
         }
     }
 
@@ -166,10 +211,7 @@ public class ExecutionLogic extends WfCommonLogic {
         permissionDao.checkAllowed(user, Permission.LIST, process);
         List<Job> jobs = jobDao.findByProcess(process);
         if (recursive) {
-            List<Process> subprocesses = nodeProcessDao.getSubprocessesRecursive(process);
-            for (Process subProcess : subprocesses) {
-                jobs.addAll(jobDao.findByProcess(subProcess));
-            }
+            jobs.addAll(jobDao.findByProcesses(nodeProcessDao.getSubprocessesRecursive(process)));
         }
         List<WfJob> result = Lists.newArrayList();
         for (Job job : jobs) {
@@ -185,8 +227,8 @@ public class ExecutionLogic extends WfCommonLogic {
         result.addAll(getTokens(process));
         if (recursive) {
             List<Process> subprocesses = nodeProcessDao.getSubprocessesRecursive(process);
-            for (Process subProcess : subprocesses) {
-                result.addAll(getTokens(subProcess));
+            for (Token token : tokenDao.findByProcessesAndExecutionStatusIsNotEnded(subprocesses)) {
+                result.add(new WfToken(token, processDefinitionLoader.getDefinition(token.getProcess())));
             }
         }
         return result;
@@ -244,7 +286,7 @@ public class ExecutionLogic extends WfCommonLogic {
                 processDefinition = processDefinition.getEmbeddedSubprocessByIdNotNull(subprocessId);
             }
             ProcessLogs processLogs = new ProcessLogs(processId);
-            processLogs.addLogs(processLogDao.get(processId, processDefinition), false);
+            processLogs.addLogs(processLogDao.getGraphLogs(processId, processDefinition), false);
             GraphImageBuilder builder = new GraphImageBuilder(processDefinition);
             builder.setHighlightedToken(highlightedToken);
             return builder.createDiagram(process, processLogs);
@@ -299,9 +341,12 @@ public class ExecutionLogic extends WfCommonLogic {
             Process process = processDao.getNotNull(processId);
             permissionDao.checkAllowed(user, Permission.LIST, process);
             ProcessDefinition processDefinition = getDefinition(process);
-            List<ProcessLog> logs = processLogDao.getAll(processId);
             List<Executor> executors = executorDao.getAllExecutors(BatchPresentationFactory.EXECUTORS.createNonPaged());
-            return new GraphHistoryBuilder(executors, process, processDefinition, logs, subprocessId).createDiagram();
+            GraphHistoryBuilder builder;
+            try (ProcessLogIterator logs = processLogDao.iterateAll(processId)) {
+                builder = new GraphHistoryBuilder(executors, process, processDefinition, logs, subprocessId);
+            }
+            return builder.createDiagram();
         } catch (Exception e) {
             throw Throwables.propagate(e);
         }
@@ -313,33 +358,41 @@ public class ExecutionLogic extends WfCommonLogic {
             Process process = processDao.getNotNull(processId);
             permissionDao.checkAllowed(user, Permission.LIST, process);
             ProcessDefinition processDefinition = getDefinition(process);
-            List<ProcessLog> logs = processLogDao.getAll(processId);
             List<Executor> executors = executorDao.getAllExecutors(BatchPresentationFactory.EXECUTORS.createNonPaged());
-            return new GraphHistoryBuilder(executors, process, processDefinition, logs, subprocessId).getElements();
+            GraphHistoryBuilder builder;
+            try (ProcessLogIterator logs = processLogDao.iterateAll(processId)) {
+                builder = new GraphHistoryBuilder(executors, process, processDefinition, logs, subprocessId);
+            }
+            return builder.getElements();
         } catch (Exception e) {
             throw Throwables.propagate(e);
         }
     }
 
-    public int upgradeProcessesToDefinitionVersion(User user, Long definitionId, Long newVersion) {
+    public int upgradeProcessesToDefinitionVersion(final User user, Long definitionId, final Long newVersion) {
         if (!SystemProperties.isUpgradeProcessToDefinitionVersionEnabled()) {
             throw new ConfigurationException(
                     "In order to enable process definition version upgrade set property 'upgrade.process.to.definition.version.enabled' to 'true' in system.properties or wfe.custom.system.properties");
         }
-        Deployment deployment = deploymentDao.getNotNull(definitionId);
-        Deployment nextDeployment = deploymentDao.findDeployment(deployment.getName(), newVersion);
+        final Deployment deployment = deploymentDao.getNotNull(definitionId);
+        final Deployment nextDeployment = deploymentDao.findDeployment(deployment.getName(), newVersion);
         ProcessFilter filter = new ProcessFilter();
         filter.setDefinitionName(deployment.getName());
         filter.setDefinitionVersion(deployment.getVersion());
         filter.setFinished(false);
-        List<Process> processes = processDao.getProcesses(filter);
-        for (Process process : processes) {
-            process.setDeployment(nextDeployment);
-            processDao.update(process);
-            processLogDao.addLog(new AdminActionLog(user.getActor(), AdminActionLog.ACTION_UPGRADE_PROCESS_TO_VERSION, deployment.getVersion(),
-                    newVersion), process, null);
-        }
-        return processes.size();
+        List<Long> processIds = processDao.getProcessIds(filter);
+        executeInChunks("Processes upgrade", processIds, new ProcessBatchExecutor.Operation() {
+
+            @Override
+            public void execute(List<Long> processIds) {
+                for (Process process : processDao.find(processIds)) {
+                    process.setDeployment(nextDeployment);
+                    processLogDao.addLog(new AdminActionLog(user.getActor(), AdminActionLog.ACTION_UPGRADE_PROCESS_TO_VERSION,
+                            deployment.getVersion(), newVersion), process, null);
+                }
+            }
+        });
+        return processIds.size();
     }
 
     public boolean upgradeProcessToDefinitionVersion(User user, Long processId, Long version) {
@@ -465,12 +518,6 @@ public class ExecutionLogic extends WfCommonLogic {
         return result;
     }
 
-    private List<Process> getProcessesInternal(User user, ProcessFilter filter) {
-        List<Process> processes = processDao.getProcesses(filter);
-        processes = filterSecuredObject(user, processes, Permission.LIST);
-        return processes;
-    }
-
     private List<WfProcess> toWfProcesses(List<Process> processes, List<String> variableNamesToInclude) {
         List<WfProcess> result = Lists.newArrayListWithExpectedSize(processes.size());
         Map<Process, Map<String, Variable<?>>> variables = variableDao.getVariables(Sets.newHashSet(processes), variableNamesToInclude);
@@ -503,6 +550,15 @@ public class ExecutionLogic extends WfCommonLogic {
         if (process.getExecutionStatus() == ExecutionStatus.ACTIVE) {
             throw new InternalApplicationException(process + " already activated");
         }
+        activateSingleProcess(user, process);
+        for (Process subprocess : nodeProcessDao.getSubprocessesRecursive(process)) {
+            if (subprocess.getExecutionStatus() != ExecutionStatus.ACTIVE && subprocess.getExecutionStatus() != ExecutionStatus.ENDED) {
+                activateSingleProcess(user, subprocess);
+            }
+        }
+    }
+
+    private void activateSingleProcess(User user, Process process) {
         for (Token token : tokenDao.findByProcessAndExecutionStatus(process, ExecutionStatus.FAILED)) {
             nodeAsyncExecutor.execute(token, false);
         }
@@ -513,12 +569,6 @@ public class ExecutionLogic extends WfCommonLogic {
             process.setExecutionStatus(ExecutionStatus.ACTIVE);
         }
         processLogDao.addLog(new ProcessActivateLog(user.getActor()), process, null);
-        List<Process> subprocesses = nodeProcessDao.getSubprocessesRecursive(process);
-        for (Process subprocess : subprocesses) {
-            if (subprocess.getExecutionStatus() != ExecutionStatus.ACTIVE) {
-                activateProcessWithSubprocesses(user, subprocess);
-            }
-        }
     }
 
     private void suspendProcessWithSubprocesses(User user, Process process) {
@@ -528,16 +578,19 @@ public class ExecutionLogic extends WfCommonLogic {
         if (process.getExecutionStatus() == ExecutionStatus.ENDED) {
             return;
         }
+        suspendSingleProcess(user, process);
+        for (Process subprocess : nodeProcessDao.getSubprocessesRecursive(process)) {
+            if (subprocess.getExecutionStatus() != ExecutionStatus.SUSPENDED && subprocess.getExecutionStatus() != ExecutionStatus.ENDED) {
+                suspendSingleProcess(user, subprocess);
+            }
+        }
+    }
+
+    private void suspendSingleProcess(User user, Process process) {
         process.setExecutionStatus(ExecutionStatus.SUSPENDED);
         for (Token token : tokenDao.findByProcessAndExecutionStatus(process, ExecutionStatus.ACTIVE)) {
             token.setExecutionStatus(ExecutionStatus.SUSPENDED);
         }
         processLogDao.addLog(new ProcessSuspendLog(user.getActor()), process, null);
-        List<Process> subprocesses = nodeProcessDao.getSubprocessesRecursive(process);
-        for (Process subprocess : subprocesses) {
-            if (subprocess.getExecutionStatus() != ExecutionStatus.SUSPENDED) {
-                suspendProcessWithSubprocesses(user, subprocess);
-            }
-        }
     }
 }
@@ -0,0 +1,26 @@
+package ru.runa.wfe.execution.logic;
+
+import java.util.List;
+
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Executes administrative operation over chunk of processes in separate transaction, so operation over large set of processes does not hold single
+ * long transaction.
+ */
+public class ProcessBatchExecutor {
+
+    /**
+     * Operation over processes chunk.
+     */
+    public interface Operation {
+
+        void execute(List<Long> processIds);
+    }
+
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void executeChunk(Operation operation, List<Long> processIds) {
+        operation.execute(processIds);
+    }
+}
@@ -0,0 +1,601 @@
+/*
+ * This file is part of the RUNA WFE project.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; version 2.1
+ * of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+package ru.runa.wfe.extension.handler.var;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import ru.runa.wfe.commons.ApplicationContextFactory;
+import ru.runa.wfe.commons.SystemProperties;
+import ru.runa.wfe.commons.TypeConversionUtil;
+import ru.runa.wfe.execution.ExecutionContext;
+import ru.runa.wfe.extension.function.Function;
+import ru.runa.wfe.user.Executor;
+import ru.runa.wfe.user.Group;
+import ru.runa.wfe.var.dto.WfVariable;
+import ru.runa.wfe.var.file.FileVariable;
+import ru.runa.wfe.var.file.FileVariableImpl;
+
+/**
+ * Formula of {@link FormulaActionHandler}, parsed to expressions tree. Compiled formula is immutable and may be executed concurrently.
+ * <p/>
+ * Expression evaluation follows formula interpretation order: operands are evaluated from left to right; if left operand is null, then operation
+ * result is null and right operand is not evaluated. Formula syntax errors are reported, when evaluation reaches error position.
+ */
+class CompiledFormula {
+    private static final Log log = LogFactory.getLog(FormulaActionHandler.class);
+    private static final FormulaActionHandlerOperations actions = new FormulaActionHandlerOperations();
+
+    private final List<Statement> statements;
+
+    CompiledFormula(List<Statement> statements) {
+        this.statements = statements;
+    }
+
+    void execute(ExecutionContext context) {
+        for (Statement statement : statements) {
+            statement.execute(new Evaluation(context, statement.formula));
+        }
+    }
+
+    /**
+     * Formula evaluation state.
+     */
+    static class Evaluation {
+        private final ExecutionContext context;
+        /**
+         * Currently executed statement.
+         */
+        private final String formula;
+
+        Evaluation(ExecutionContext context, String formula) {
+            this.context = context;
+            this.formula = formula;
+        }
+
+        void error(String message) {
+            String details = "Incorrect formula in " + context.getProcess().toString() + " -> " + formula;
+            if (message != null) {
+                details += "\n - " + message;
+            }
+            if (SystemProperties.isFormulaHandlerInStrictMode()) {
+                throw new RuntimeException(details);
+            } else {
+                log.warn(details);
+            }
+        }
+    }
+
+    /**
+     * Assignment of expression value to process variable.
+     */
+    static class Statement {
+        private final String formula;
+        private final String variableName;
+        private final Expression expression;
+        /**
+         * Error in variable name; statement is not executed.
+         */
+        private final String variableNameError;
+
+        Statement(String formula, String variableName, Expression expression) {
+            this.formula = formula;
+            this.variableName = variableName;
+            this.expression = expression;
+            this.variableNameError = null;
+        }
+
+        Statement(String formula, String variableNameError) {
+            this.formula = formula;
+            this.variableName = null;
+            this.expression = null;
+            this.variableNameError = variableNameError;
+        }
+
+        void execute(Evaluation evaluation) {
+            if (variableName == null) {
+                evaluation.error(variableNameError);
+                return;
+            }
+            Object value;
+            try {
+                value = expression.evaluate(evaluation);
+            } catch (AbortException e) {
+                if (e.message != null) {
+                    evaluation.error(e.message);
+                }
+                value = null;
+            }
+            ExecutionContext context = evaluation.context;
+            WfVariable variable = context.getVariableProvider().getVariable(variableName);
+            if (variable != null) {
+                Class<?> definedClass = variable.getDefinition().getFormatNotNull().getJavaClass();
+                boolean appropriateType = value == null || definedClass.isAssignableFrom(value.getClass());
+                if (!appropriateType) {
+                    appropriateType = variable.getValue() != null && variable.getValue().getClass() == value.getClass();
+                }
+                if (!appropriateType) {
+                    value = TypeConversionUtil.convertTo(definedClass, value);
+                }
+            }
+            if (FileVariable.class.isInstance(value)) {
+                FileVariable fileVariable = (FileVariable) value;
+                value = new FileVariableImpl(fileVariable);
+            }
+            context.setVariableValue(variableName, value);
+        }
+    }
+
+    interface Expression {
+
+        Object evaluate(Evaluation evaluation);
+    }
+
+    /**
+     * Stops statement evaluation at formula syntax error (or unsupported construction) position. Variable is set to null.
+     */
+    private static class AbortException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        private final String message;
+
+        AbortException(String message) {
+            super(message, null, false, false);
+            this.message = message;
+        }
+    }
+
+    static class Abort implements Expression {
+        private final String message;
+
+        /**
+         * @param message
+         *            Error message or null, if statement must be aborted silently.
+         */
+        Abort(String message) {
+            this.message = message;
+        }
+
+        @Override
+        public Object evaluate(Evaluation evaluation) {
+            throw new AbortException(message);
+        }
+    }
+
+    static class Constant implements Expression {
+        private final Object value;
+
+        Constant(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public Object evaluate(Evaluation evaluation) {
+            if (value instanceof Date) {
+                return new Date(((Date) value).getTime());
+            }
+            return value;
+        }
+    }
+
+    static class Variable implements Expression {
+        private final String name;
+        private final int position;
+
+        Variable(String name, int position) {
+            this.name = name;
+            this.position = position;
+        }
+
+        @Override
+        public Object evaluate(Evaluation evaluation) {
+            WfVariable variable = evaluation.context.getVariableProvider().getVariable(name);
+            if (variable != null) {
+                if (variable.getValue() == null) {
+                    log.warn("Null value will be returned for variable '" + name + "'");
+                }
+                return variable.getValue();
+            }
+            evaluation.error("Cannot parse '" + name + "' at position " + position);
+            return null;
+        }
+    }
+
+    enum Operator {
+        AND(false) {
+            @Override
+            Object apply(Object o1, Object o2) {
+                return actions.and(o1, o2);
+            }
+        },
+        OR(false) {
+            @Override
+            Object apply(Object o1, Object o2) {
+                return actions.or(o1, o2);
+            }
+        },
+        XOR(false) {
+            @Override
+            Object apply(Object o1, Object o2) {
+                return actions.xor(o1, o2);
+            }
+        },
+        LESS(true) {
+            @Override
+            Object apply(Object o1, Object o2) {
+                return actions.less(o1, o2);
+            }
+        },
+        LESS_OR_EQUAL(true) {
+            @Override
+            Object apply(Object o1, Object o2) {
+                return actions.lessOrEqual(o1, o2);
+            }
+        },
+        BIGGER(true) {
+            @Override
+            Object apply(Object o1, Object o2) {
+                return actions.bigger(o1, o2);
+            }
+        },
+        BIGGER_OR_EQUAL(true) {
+            @Override
+            Object apply(Object o1, Object o2) {
+                return actions.biggerOrEqual(o1, o2);
+            }
+        },
+        EQUAL(true) {
+            @Override
+            Object apply(Object o1, Object o2) {
+                return actions.equal(o1, o2);
+            }
+        },
+        NOT_EQUAL(true) {
+            @Override
+            Object apply(Object o1, Object o2) {
+                return actions.not(actions.equal(o1, o2));
+            }
+        },
+        SUM(false) {
+            @Override
+            Object apply(Object o1, Object o2) {
+                return actions.sum(o1, o2);
+            }
+        },
+        SUB(false) {
+            @Override
+            Object apply(Object o1, Object o2) {
+                return actions.sub(o1, o2);
+            }
+        },
+        MUL(false) {
+            @Override
+            Object apply(Object o1, Object o2) {
+                return actions.mul(o1, o2);
+            }
+        },
+        DIV(false) {
+            @Override
+            Object apply(Object o1, Object o2) {
+                return actions.div(o1, o2);
+            }
+        },
+        /**
+         * Evaluates right operand after not null left operand; used to stop evaluation at formula error position.
+         */
+        SEQUENCE(false) {
+            @Override
+            Object apply(Object o1, Object o2) {
+                return o2;
+            }
+        };
+
+        /**
+         * Flag, equals to true, if operation result is null for null right operand.
+         */
+        private final boolean rightOperandRequired;
+
+        private Operator(boolean rightOperandRequired) {
+            this.rightOperandRequired = rightOperandRequired;
+        }
+
+        abstract Object apply(Object o1, Object o2);
+    }
+
+    static class Binary implements Expression {
+        private final Operator operator;
+        private final Expression left;
+        private final Expression right;
+
+        Binary(Operator operator, Expression left, Expression right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public Object evaluate(Evaluation evaluation) {
+            Object o1 = left.evaluate(evaluation);
+            if (o1 == null) {
+                return null;
+            }
+            Object o2 = right.evaluate(evaluation);
+            if (o2 == null && operator.rightOperandRequired) {
+                return null;
+            }
+            return operator.apply(o1, o2);
+        }
+    }
+
+    static class ChangeSign implements Expression {
+        private final Expression operand;
+
+        ChangeSign(Expression operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        public Object evaluate(Evaluation evaluation) {
+            return actions.changeSign(operand.evaluate(evaluation));
+        }
+    }
+
+    static class Not implements Expression {
+        private final Expression operand;
+
+        Not(Expression operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        public Object evaluate(Evaluation evaluation) {
+            return actions.not(operand.evaluate(evaluation));
+        }
+    }
+
+    /**
+     * Call of function, registered in {@link FormulaActionHandlerOperations}.
+     */
+    static class FunctionCall implements Expression {
+        private final Function<? extends Object> function;
+        private final Expression[] parameters;
+
+        FunctionCall(Function<? extends Object> function, List<Expression> parameters) {
+            this.function = function;
+            this.parameters = parameters.toArray(new Expression[parameters.size()]);
+        }
+
+        @Override
+        public Object evaluate(Evaluation evaluation) {
+            Object[] values = new Object[parameters.length];
+            for (int i = 0; i < parameters.length; i++) {
+                values[i] = parameters[i].evaluate(evaluation);
+            }
+            return function.execute(values);
+        }
+    }
+
+    /**
+     * Call of function, implemented by formula handler itself.
+     */
+    static class BuiltinCall implements Expression {
+        private final String name;
+        private final Expression[] parameters;
+        /**
+         * For each parameter: formula position after parameter, used in error messages.
+         */
+        private final int[] positions;
+
+        BuiltinCall(String name, List<Expression> parameters, List<Integer> positions) {
+            this.name = name;
+            this.parameters = parameters.toArray(new Expression[parameters.size()]);
+            this.positions = new int[positions.size()];
+            for (int i = 0; i < this.positions.length; i++) {
+                this.positions[i] = positions.get(i);
+            }
+        }
+
+        @Override
+        public Object evaluate(Evaluation evaluation) {
+            switch (name) {
+            case "get_instance_id":
+            case "get_process_id":
+                return evaluation.context.getProcess().getId();
+            case "current_date_time":
+                return new Date();
+            case "current_date":
+                return actions.dateFunction(new Date());
+            case "current_time":
+                return actions.timeFunction(new Date());
+            case "random":
+                return Math.random();
+            case "date": {
+                Object param1 = parameters[0].evaluate(evaluation);
+                return param1 == null ? incorrectParameters(evaluation, 0) : actions.dateFunction(param1);
+            }
+            case "time": {
+                Object param1 = parameters[0].evaluate(evaluation);
+                return param1 == null ? incorrectParameters(evaluation, 0) : actions.timeFunction(param1);
+            }
+            case "hours_round_up": {
+                Object param1 = parameters[0].evaluate(evaluation);
+                return param1 == null ? incorrectParameters(evaluation, 0) : actions.hoursRoundUpFunction(param1);
+            }
+            case "round_up":
+            case "round_down":
+            case "round":
+                return round(evaluation);
+            case "number_to_string_ru":
+            case "number_to_short_string_ru":
+                return numberToString(evaluation);
+            case "FIO_case_ru": {
+                Object[] params = evaluateNotNull(evaluation);
+                if (params == null) {
+                    return null;
+                }
+                String fio = params[0].toString();
+                Integer caseNumber = (Integer) actions.translate(params[1], Integer.class);
+                if (caseNumber == null || caseNumber < 1 || caseNumber > 6) {
+                    return incorrectParameters(evaluation, 2);
+                }
+                String mode = params[2].toString();
+                return actions.nameCaseRussian(fio, caseNumber, mode);
+            }
+            case "BigDecimal": {
+                Object param = parameters[0].evaluate(evaluation);
+                return param == null ? incorrectParameters(evaluation, 0) : new BigDecimal(param.toString());
+            }
+            case "float": {
+                Object param = parameters[0].evaluate(evaluation);
+                return param == null ? incorrectParameters(evaluation, 0) : new Double(param.toString());
+            }
+            case "mapping": {
+                Object[] params = evaluateNotNull(evaluation);
+                if (params == null) {
+                    return null;
+                }
+                return actions.mapping(params[0].toString(), params[1].toString());
+            }
+            case "isExecutorInGroup":
+                return isExecutorInGroup(evaluation);
+            default:
+                throw new IllegalStateException("Unexpected function " + name);
+            }
+        }
+
+        private Object round(Evaluation evaluation) {
+            Object param1 = parameters[0].evaluate(evaluation);
+            Double d = (Double) actions.translate(param1, Double.class);
+            if (d == null) {
+                return incorrectParameters(evaluation, 0);
+            }
+            Integer num = 0;
+            if (parameters.length > 1) {
+                num = (Integer) actions.translate(parameters[1].evaluate(evaluation), Integer.class);
+                if (num == null) {
+                    return incorrectParameters(evaluation, 1);
+                }
+            }
+            RoundingMode roundingMode = name.equals("round_up") ? RoundingMode.UP : name.equals("round_down") ? RoundingMode.DOWN
+                    : RoundingMode.HALF_UP;
+            if (BigDecimal.class.isInstance(param1)) {
+                return ((BigDecimal) param1).setScale(num, roundingMode);
+            }
+            if (num <= 0) {
+                switch (roundingMode) {
+                case UP:
+                    return actions.roundUpFunction(d);
+                case DOWN:
+                    return actions.roundDownFunction(d);
+                default:
+                    return actions.roundFunction(d);
+                }
+            }
+            switch (roundingMode) {
+            case UP:
+                return actions.roundUpFunction(d, num);
+            case DOWN:
+                return actions.roundDownFunction(d, num);
+            default:
+                return actions.roundFunction(d, num);
+            }
+        }
+
+        private Object numberToString(Evaluation evaluation) {
+            Object[] params = evaluateNotNull(evaluation);
+            if (params == null) {
+                return null;
+            }
+            Long number = (Long) actions.translate(params[0], Long.class);
+            if (params.length == 1) {
+                if (number == null) {
+                    return incorrectParameters(evaluation, 0);
+                }
+                return NumberToStringRu.numberToString(number);
+            }
+            int p = -1;
+            if (params[1].toString().equals("M")) {
+                p = 0;
+            }
+            if (params[1].toString().equals("F")) {
+                p = 1;
+            }
+            if (p == -1 || number == null) {
+                return incorrectParameters(evaluation, 4);
+            }
+            NumberToStringRu.Word word = new NumberToStringRu.Word(p, new String[] { params[2].toString(), params[3].toString(),
+                    params[4].toString() });
+            if (name.equals("number_to_short_string_ru")) {
+                return NumberToStringRu.numberToShortString(number, word);
+            }
+            return NumberToStringRu.numberToString(number, word);
+        }
+
+        private Object isExecutorInGroup(Evaluation evaluation) {
+            Object param1 = parameters[0].evaluate(evaluation);
+            if (param1 == null) {
+                return incorrectParameters(evaluation, 0);
+            }
+            Group group;
+            try {
+                group = TypeConversionUtil.convertTo(Group.class, param1);
+            } catch (Exception e) {
+                evaluation.error("param1 cannot is not group: " + e);
+                return null;
+            }
+            Object param2 = parameters[1].evaluate(evaluation);
+            if (param2 == null) {
+                return incorrectParameters(evaluation, 1);
+            }
+            Executor executor;
+            try {
+                executor = TypeConversionUtil.convertTo(Executor.class, param2);
+            } catch (Exception e) {
+                evaluation.error("param2 cannot is not executor: " + e);
+                return null;
+            }
+            return ApplicationContextFactory.getExecutorDAO().isExecutorInGroup(executor, group);
+        }
+
+        /**
+         * Evaluates all parameters in order.
+         *
+         * @return Parameter values or null, if some parameter value is null (error is reported).
+         */
+        private Object[] evaluateNotNull(Evaluation evaluation) {
+            Object[] values = new Object[parameters.length];
+            for (int i = 0; i < parameters.length; i++) {
+                values[i] = parameters[i].evaluate(evaluation);
+                if (values[i] == null) {
+                    incorrectParameters(evaluation, i);
+                    return null;
+                }
+            }
+            return values;
+        }
+
+        private Object incorrectParameters(Evaluation evaluation, int parameterIndex) {
+            evaluation.error("Incorrect parameters for " + name + " function at position " + positions[parameterIndex]);
+            return null;
+        }
+    }
+}
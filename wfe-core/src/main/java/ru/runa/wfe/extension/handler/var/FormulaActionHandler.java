@@ -17,31 +17,34 @@
  */
 package ru.runa.wfe.extension.handler.var;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.util.Date;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 import ru.runa.wfe.InternalApplicationException;
-import ru.runa.wfe.commons.ApplicationContextFactory;
 import ru.runa.wfe.commons.CalendarUtil;
-import ru.runa.wfe.commons.SystemProperties;
-import ru.runa.wfe.commons.TypeConversionUtil;
 import ru.runa.wfe.execution.ExecutionContext;
 import ru.runa.wfe.extension.ActionHandlerBase;
 import ru.runa.wfe.extension.function.Function;
-import ru.runa.wfe.user.Executor;
-import ru.runa.wfe.user.Group;
-import ru.runa.wfe.var.dto.WfVariable;
-import ru.runa.wfe.var.file.FileVariableImpl;
-import ru.runa.wfe.var.file.FileVariable;
+import ru.runa.wfe.extension.handler.var.CompiledFormula.Expression;
+import ru.runa.wfe.extension.handler.var.CompiledFormula.Operator;
 
+/**
+ * Evaluates formulas and stores results in process variables. Formula is parsed once per configuration into {@link CompiledFormula}, which is kept
+ * while process definition (holding configuration) is alive.
+ */
 //TODO introduce strict mode and throw exceptions there
 public class FormulaActionHandler extends ActionHandlerBase {
-    private ExecutionContext context;
-    private final FormulaActionHandlerOperations actions = new FormulaActionHandlerOperations();
+    /**
+     * Compiled formulas by configuration. Configuration strings of process definitions are interned, so weak identity keys are used.
+     */
+    private static final Cache<String, CompiledFormula> compiledFormulas = CacheBuilder.newBuilder().weakKeys().build();
     private char[] formula = null;
     private int nowPosition = 0;
     private static final String oneSymbolTokens = "=()+-*/!<>&|^'\",\n;";
@@ -53,6 +56,10 @@ public class FormulaActionHandler extends ActionHandlerBase {
     private boolean stringVariableToken = false;
     private boolean quo = false;
     private String nextToken = null;
+    /**
+     * Flag, equals to true, if statement parsing is stopped at error position.
+     */
+    private boolean aborted = false;
 
     private String nextStringToken(char limitingSymbol) {
         if (formula[nowPosition] != limitingSymbol) {
@@ -126,12 +133,30 @@ public class FormulaActionHandler extends ActionHandlerBase {
 
     @Override
     public void execute(ExecutionContext context) {
-        this.context = context;
         if (configuration == null) {
             log.error("Configuration not found in " + context);
             return;
         }
         log.debug(configuration);
+        getCompiledFormula().execute(context);
+    }
+
+    private CompiledFormula getCompiledFormula() {
+        try {
+            return compiledFormulas.get(configuration, new Callable<CompiledFormula>() {
+
+                @Override
+                public CompiledFormula call() {
+                    return compile();
+                }
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    private CompiledFormula compile() {
+        List<CompiledFormula.Statement> statements = Lists.newArrayList();
         formula = configuration.toCharArray();
         nowPosition = 0;
         stringVariableToken = false;
@@ -145,7 +170,7 @@ public class FormulaActionHandler extends ActionHandlerBase {
                     int ip = nowPosition;
                     String nt = nextToken;
                     boolean b = stringVariableToken;
-                    parseFormula();
+                    statements.add(parseFormula());
                     nowPosition = ip;
                     stringVariableToken = b;
                     nextToken = nt;
@@ -171,54 +196,37 @@ public class FormulaActionHandler extends ActionHandlerBase {
         }
         if (nf.length() > 0) {
             formula = nf.toCharArray();
-            parseFormula();
+            statements.add(parseFormula());
         }
+        return new CompiledFormula(statements);
     }
 
-    private void parseFormula() {
+    private CompiledFormula.Statement parseFormula() {
         nowPosition = 0;
+        aborted = false;
+        String statement = new String(formula);
         String variableName = nextToken();
         if (stringVariableToken) {
-            error("Incorrect variable name: use ' instead \"");
-            return;
+            return new CompiledFormula.Statement(statement, "Incorrect variable name: use ' instead \"");
         }
         if (variableName == null) {
-            error("Variable name expected");
-            return;
+            return new CompiledFormula.Statement(statement, "Variable name expected");
         }
         if (variableName.length() == 1 && oneSymbolTokens.contains(variableName)) {
-            error("Incorrect variable name: " + variableName);
-            return;
+            return new CompiledFormula.Statement(statement, "Incorrect variable name: " + variableName);
         }
         String equal = nextToken();
         if (equal == null || !equal.equals("=")) {
-            error("'=' expected");
-            return;
+            return new CompiledFormula.Statement(statement, "'=' expected");
         }
-        Object value = parsePriority0();
-        WfVariable variable = context.getVariableProvider().getVariable(variableName);
-        if (variable != null) {
-            Class<?> definedClass = variable.getDefinition().getFormatNotNull().getJavaClass();
-            boolean appropriateType = value == null || definedClass.isAssignableFrom(value.getClass());
-            if (!appropriateType) {
-                appropriateType = variable.getValue() != null && variable.getValue().getClass() == value.getClass();
-            }
-            if (!appropriateType) {
-                value = TypeConversionUtil.convertTo(definedClass, value);
-            }
-        }
-        if (FileVariable.class.isInstance(value)) {
-            FileVariable fileVariable = (FileVariable) value;
-            value = new FileVariableImpl(fileVariable);
-        }
-        context.setVariableValue(variableName, value);
+        return new CompiledFormula.Statement(statement, variableName, parsePriority0());
     }
 
-    private Object parsePriority0() {
-        Object answer = parsePriority1();
+    private Expression parsePriority0() {
+        Expression answer = parsePriority1();
         while (true) {
-            if (answer == null) {
-                return null;
+            if (aborted) {
+                return answer;
             }
             String s = nextToken();
             if (s == null) {
@@ -229,29 +237,25 @@ public class FormulaActionHandler extends ActionHandlerBase {
                 return answer;
             }
             if (s.equals("&")) {
-                Object operand = parsePriority1();
-                answer = actions.and(answer, operand);
+                answer = new CompiledFormula.Binary(Operator.AND, answer, parsePriority1());
                 continue;
             }
             if (s.equals("|")) {
-                Object operand = parsePriority1();
-                answer = actions.or(answer, operand);
+                answer = new CompiledFormula.Binary(Operator.OR, answer, parsePriority1());
                 continue;
             }
             if (s.equals("^")) {
-                Object operand = parsePriority1();
-                answer = actions.xor(answer, operand);
+                answer = new CompiledFormula.Binary(Operator.XOR, answer, parsePriority1());
                 continue;
             }
-            error("Operator expected, but '" + s + "' found at position " + nowPosition);
-            return null;
+            return error(answer, "Operator expected, but '" + s + "' found at position " + nowPosition);
         }
     }
 
-    private Object parsePriority1() {
-        Object o1 = parsePriority2();
-        if (o1 == null) {
-            return null;
+    private Expression parsePriority1() {
+        Expression o1 = parsePriority2();
+        if (aborted) {
+            return o1;
         }
         String s = nextToken();
         if (s == null) {
@@ -264,64 +268,39 @@ public class FormulaActionHandler extends ActionHandlerBase {
         if (s.equals("<")) {
             if (nowPosition < formula.length && formula[nowPosition] == '=') {
                 nowPosition++;
-                Object o2 = parsePriority2();
-                if (o2 == null) {
-                    return null;
-                }
-                return actions.lessOrEqual(o1, o2);
+                return new CompiledFormula.Binary(Operator.LESS_OR_EQUAL, o1, parsePriority2());
             } else {
-                Object o2 = parsePriority2();
-                if (o2 == null) {
-                    return null;
-                }
-                return actions.less(o1, o2);
+                return new CompiledFormula.Binary(Operator.LESS, o1, parsePriority2());
             }
         }
         if (s.equals(">")) {
             if (nowPosition < formula.length && formula[nowPosition] == '=') {
                 nowPosition++;
-                Object o2 = parsePriority2();
-                if (o2 == null) {
-                    return null;
-                }
-                return actions.biggerOrEqual(o1, o2);
+                return new CompiledFormula.Binary(Operator.BIGGER_OR_EQUAL, o1, parsePriority2());
             } else {
-                Object o2 = parsePriority2();
-                if (o2 == null) {
-                    return null;
-                }
-                return actions.bigger(o1, o2);
+                return new CompiledFormula.Binary(Operator.BIGGER, o1, parsePriority2());
             }
         }
         if (s.equals("=")) {
             if (nowPosition < formula.length && formula[nowPosition] == '=') {
                 nowPosition++;
-                Object o2 = parsePriority2();
-                if (o2 == null) {
-                    return null;
-                }
-                return actions.equal(o1, o2);
+                return new CompiledFormula.Binary(Operator.EQUAL, o1, parsePriority2());
             }
         }
         if (s.equals("!")) {
             if (nowPosition < formula.length && formula[nowPosition] == '=') {
                 nowPosition++;
-                Object o2 = parsePriority2();
-                if (o2 == null) {
-                    return null;
-                }
-                return actions.not(actions.equal(o1, o2));
+                return new CompiledFormula.Binary(Operator.NOT_EQUAL, o1, parsePriority2());
             }
         }
-        error("Operator expected, but '" + s + "' found at position " + nowPosition);
-        return null;
+        return error(o1, "Operator expected, but '" + s + "' found at position " + nowPosition);
     }
 
-    private Object parsePriority2() {
-        Object answer = parsePriority3();
+    private Expression parsePriority2() {
+        Expression answer = parsePriority3();
         while (true) {
-            if (answer == null) {
-                return null;
+            if (aborted) {
+                return answer;
             }
             String s = nextToken();
             if (s == null) {
@@ -332,25 +311,22 @@ public class FormulaActionHandler extends ActionHandlerBase {
                 return answer;
             }
             if (s.equals("+")) {
-                Object operand = parsePriority3();
-                answer = actions.sum(answer, operand);
+                answer = new CompiledFormula.Binary(Operator.SUM, answer, parsePriority3());
                 continue;
             }
             if (s.equals("-")) {
-                Object operand = parsePriority3();
-                answer = actions.sub(answer, operand);
+                answer = new CompiledFormula.Binary(Operator.SUB, answer, parsePriority3());
                 continue;
             }
-            error("Operator expected, but '" + s + "' found at position " + nowPosition);
-            return null;
+            return error(answer, "Operator expected, but '" + s + "' found at position " + nowPosition);
         }
     }
 
-    private Object parsePriority3() {
-        Object answer = parseSimple();
+    private Expression parsePriority3() {
+        Expression answer = parseSimple();
         while (true) {
-            if (answer == null) {
-                return null;
+            if (aborted) {
+                return answer;
             }
             String s = nextToken();
             if (s == null) {
@@ -361,44 +337,42 @@ public class FormulaActionHandler extends ActionHandlerBase {
                 return answer;
             }
             if (s.equals("*")) {
-                Object operand = parseSimple();
-                answer = actions.mul(answer, operand);
+                answer = new CompiledFormula.Binary(Operator.MUL, answer, parseSimple());
                 continue;
             }
             if (s.equals("/")) {
-                Object operand = parseSimple();
-                answer = actions.div(answer, operand);
+                answer = new CompiledFormula.Binary(Operator.DIV, answer, parseSimple());
                 continue;
             }
-            error("Operator expected, but '" + s + "' found at position " + nowPosition);
-            return null;
+            return error(answer, "Operator expected, but '" + s + "' found at position " + nowPosition);
         }
     }
 
-    private Object parseSimple() {
+    private Expression parseSimple() {
         String s = nextToken();
         if (s == null) {
-            error("Incorrect token at position " + nowPosition);
-            return null;
+            return error("Incorrect token at position " + nowPosition);
         }
         if (s.equals("-")) {
-            return actions.changeSign(parseSimple());
+            return new CompiledFormula.ChangeSign(parseSimple());
         }
         if (s.equals("!")) {
-            return actions.not(parseSimple());
+            return new CompiledFormula.Not(parseSimple());
         }
         if (s.equals("(")) {
-            Object answer = parsePriority0();
+            Expression answer = parsePriority0();
+            if (aborted) {
+                return answer;
+            }
             nextToken = nextToken();
             if (nextToken == null || !nextToken.equals(")")) {
-                error("')' expected at position " + nowPosition);
-                return null;
+                return error(answer, "')' expected at position " + nowPosition);
             }
             nextToken = null;
             return answer;
         }
         if (oneSymbolTokens.contains(s)) {
-            return null;
+            return error(null);
         }
         nextToken = nextToken();
         if ("(".equals(nextToken)) {
@@ -406,370 +380,90 @@ public class FormulaActionHandler extends ActionHandlerBase {
         }
         Object answer = tryParseNumericalValue(s);
         if (answer != null) {
-            return answer;
-        }
-        WfVariable variable = context.getVariableProvider().getVariable(s);
-        if (variable != null) {
-            if (variable.getValue() == null) {
-                log.warn("Null value will be returned for variable '" + s + "'");
-            }
-            return variable.getValue();
+            return new CompiledFormula.Constant(answer);
         }
-        error("Cannot parse '" + s + "' at position " + (nowPosition - s.length() + 1));
-        return null;
+        return new CompiledFormula.Variable(s, nowPosition - s.length() + 1);
     }
 
-    private Object tryParseFunction(String s) {
+    private Expression tryParseFunction(String s) {
         nextToken();
-        if (s.equals("get_instance_id") || s.equals("get_process_id")) {
-            if (!nextToken().equals(")")) {
-                incorrectParameters(s);
-                return null;
-            }
-            return context.getProcess().getId();
-        }
-        if (s.equals("current_date_time")) {
-            if (!nextToken().equals(")")) {
-                incorrectParameters(s);
-                return null;
-            }
-            return new Date();
-        }
-        if (s.equals("current_date")) {
-            if (!nextToken().equals(")")) {
-                incorrectParameters(s);
-                return null;
-            }
-            return actions.dateFunction(new Date());
-        }
-        if (s.equals("current_time")) {
-            if (!nextToken().equals(")")) {
-                incorrectParameters(s);
-                return null;
-            }
-            return actions.timeFunction(new Date());
-        }
-        if (s.equals("random")) {
-            if (!nextToken().equals(")")) {
-                incorrectParameters(s);
-                return null;
-            }
-            return Math.random();
-        }
-        if (s.equals("date")) {
-            Object param1 = parsePriority0();
-            if (param1 == null || !nextToken().equals(")")) {
-                incorrectParameters(s);
-                return null;
-            }
-            return actions.dateFunction(param1);
-        }
-        if (s.equals("time")) {
-            Object param1 = parsePriority0();
-            if (param1 == null || !nextToken().equals(")")) {
-                incorrectParameters(s);
-                return null;
-            }
-            return actions.timeFunction(param1);
-        }
-        if (s.equals("hours_round_up")) {
-            Object param1 = parsePriority0();
-            if (param1 == null || !nextToken().equals(")")) {
-                incorrectParameters(s);
-                return null;
-            }
-            return actions.hoursRoundUpFunction(param1);
-        }
-        if (s.equals("round_up")) {
-            Object param1 = parsePriority0();
-            Double d = (Double) actions.translate(param1, Double.class);
-            if (d == null) {
-                incorrectParameters(s);
-                return null;
-            }
-            Integer num = 0;
-            String tok = nextToken();
-            if (!tok.equals(")")) {
-                if (!tok.equals(",")) {
-                    incorrectParameters(s);
-                    return null;
-                }
-                num = (Integer) actions.translate(parsePriority0(), Integer.class);
-                if (num == null) {
-                    incorrectParameters(s);
-                    return null;
-                }
-                tok = nextToken();
-            }
-            if (!tok.equals(")")) {
-                incorrectParameters(s);
-                return null;
-            }
-            if (BigDecimal.class.isInstance(param1)) {
-                return ((BigDecimal) param1).setScale(num, RoundingMode.UP);
-            } else {
-                if (num <= 0) {
-                    return actions.roundUpFunction(d);
-                }
-                return actions.roundUpFunction(d, num);
-            }
-        }
-        if (s.equals("round_down")) {
-            Object param1 = parsePriority0();
-            Double d = (Double) actions.translate(param1, Double.class);
-            if (d == null) {
-                incorrectParameters(s);
-                return null;
-            }
-            Integer num = 0;
+        List<Expression> parameters = Lists.newArrayList();
+        List<Integer> positions = Lists.newArrayList();
+        if (s.equals("get_instance_id") || s.equals("get_process_id") || s.equals("current_date_time") || s.equals("current_date")
+                || s.equals("current_time") || s.equals("random")) {
+            if (!")".equals(nextToken())) {
+                return incorrectParameters(s);
+            }
+            return new CompiledFormula.BuiltinCall(s, parameters, positions);
+        }
+        if (s.equals("date") || s.equals("time") || s.equals("hours_round_up")) {
+            Expression aborting = parseParameters(s, parameters, positions, ")");
+            return aborting != null ? aborting : new CompiledFormula.BuiltinCall(s, parameters, positions);
+        }
+        if (s.equals("round_up") || s.equals("round_down") || s.equals("round")) {
+            Expression param1 = parsePriority0();
+            if (aborted) {
+                return param1;
+            }
+            parameters.add(param1);
+            positions.add(nowPosition);
             String tok = nextToken();
-            if (!tok.equals(")")) {
-                if (!tok.equals(",")) {
-                    incorrectParameters(s);
-                    return null;
+            if (!")".equals(tok)) {
+                if (!",".equals(tok)) {
+                    return incorrectParameters(s);
                 }
-                num = (Integer) actions.translate(parsePriority0(), Integer.class);
-                if (num == null) {
-                    incorrectParameters(s);
-                    return null;
+                Expression aborting = parseParameters(s, parameters, positions, ")");
+                if (aborting != null) {
+                    return aborting;
                 }
-                tok = nextToken();
-            }
-            if (!tok.equals(")")) {
-                incorrectParameters(s);
-                return null;
-            }
-            if (BigDecimal.class.isInstance(param1)) {
-                return ((BigDecimal) param1).setScale(num, RoundingMode.DOWN);
-            } else {
-                if (num <= 0) {
-                    return actions.roundDownFunction(d);
-                }
-                return actions.roundDownFunction(d, num);
-            }
-        }
-        if (s.equals("round")) {
-            Object param1 = parsePriority0();
-            Double d = (Double) actions.translate(param1, Double.class);
-            if (d == null) {
-                incorrectParameters(s);
-                return null;
-            }
-            Integer num = 0;
-            String tok = nextToken();
-            if (!tok.equals(")")) {
-                if (!tok.equals(",")) {
-                    incorrectParameters(s);
-                    return null;
-                }
-                num = (Integer) actions.translate(parsePriority0(), Integer.class);
-                if (num == null) {
-                    incorrectParameters(s);
-                    return null;
-                }
-                tok = nextToken();
-            }
-            if (!tok.equals(")")) {
-                incorrectParameters(s);
-                return null;
-            }
-            if (BigDecimal.class.isInstance(param1)) {
-                return ((BigDecimal) param1).setScale(num, RoundingMode.HALF_UP);
-            } else {
-                if (num <= 0) {
-                    return actions.roundFunction(d);
-                }
-                return actions.roundFunction(d, num);
             }
+            return new CompiledFormula.BuiltinCall(s, parameters, positions);
         }
         if (s.equals("number_to_string_ru")) {
-            Object param1 = parsePriority0();
-            String tok = nextToken();
-            if (param1 == null) {
-                incorrectParameters(s);
-                return null;
-            }
-            if (tok.equals(")")) {
-                Long number = (Long) actions.translate(param1, Long.class);
-                if (number == null) {
-                    incorrectParameters(s);
-                    return null;
-                }
-                return NumberToStringRu.numberToString(number);
-            }
-            if (!tok.equals(",")) {
-                incorrectParameters(s);
-                return null;
-            }
-            Object param2 = parsePriority0();
-            if (param2 == null || !nextToken().equals(",")) {
-                incorrectParameters(s);
-                return null;
+            Expression param1 = parsePriority0();
+            if (aborted) {
+                return param1;
             }
-            Object param3 = parsePriority0();
-            if (param3 == null || !nextToken().equals(",")) {
-                incorrectParameters(s);
-                return null;
-            }
-            Object param4 = parsePriority0();
-            if (param4 == null || !nextToken().equals(",")) {
-                incorrectParameters(s);
-                return null;
-            }
-            Object param5 = parsePriority0();
-            if (param5 == null || !nextToken().equals(")")) {
-                incorrectParameters(s);
-                return null;
-            }
-            Long number = (Long) actions.translate(param1, Long.class);
-            int p = -1;
-            if (param2.toString().equals("M")) {
-                p = 0;
-            }
-            if (param2.toString().equals("F")) {
-                p = 1;
+            parameters.add(param1);
+            positions.add(nowPosition);
+            String tok = nextToken();
+            if (")".equals(tok)) {
+                return new CompiledFormula.BuiltinCall(s, parameters, positions);
             }
-            if (p == -1 || number == null) {
-                incorrectParameters(s);
-                return null;
+            if (!",".equals(tok)) {
+                return incorrectParameters(s);
             }
-            String s1 = param3.toString();
-            String s2 = param4.toString();
-            String s3 = param5.toString();
-            return NumberToStringRu.numberToString(number, new NumberToStringRu.Word(p, new String[] { s1, s2, s3 }));
+            Expression aborting = parseParameters(s, parameters, positions, ",", ",", ",", ")");
+            return aborting != null ? aborting : new CompiledFormula.BuiltinCall(s, parameters, positions);
         }
         if (s.equals("FIO_case_ru")) {
-            Object param1 = parsePriority0();
-            if (param1 == null || !nextToken().equals(",")) {
-                incorrectParameters(s);
-                return null;
-            }
-            Object param2 = parsePriority0();
-            if (param2 == null || !nextToken().equals(",")) {
-                incorrectParameters(s);
-                return null;
-            }
-            Object param3 = parsePriority0();
-            if (param3 == null || !nextToken().equals(")")) {
-                incorrectParameters(s);
-                return null;
-            }
-            String fio = param1.toString();
-            Integer caseNumber = (Integer) actions.translate(param2, Integer.class);
-            if (caseNumber == null || caseNumber < 1 || caseNumber > 6) {
-                incorrectParameters(s);
-                return null;
-            }
-            String mode = param3.toString();
-            return actions.nameCaseRussian(fio, caseNumber, mode);
+            Expression aborting = parseParameters(s, parameters, positions, ",", ",", ")");
+            return aborting != null ? aborting : new CompiledFormula.BuiltinCall(s, parameters, positions);
         }
         if (s.equalsIgnoreCase("BigDecimal")) {
-            Object param = parsePriority0();
-            if (param == null || !nextToken().equals(")")) {
-                incorrectParameters(s);
-                return null;
-            }
-            return new BigDecimal(param.toString());
+            Expression aborting = parseParameters(s, parameters, positions, ")");
+            return aborting != null ? aborting : new CompiledFormula.BuiltinCall("BigDecimal", parameters, positions);
         }
         if (s.equalsIgnoreCase("float")) {
-            Object param = parsePriority0();
-            if (param == null || !nextToken().equals(")")) {
-                incorrectParameters(s);
-                return null;
-            }
-            return new Double(param.toString());
+            Expression aborting = parseParameters(s, parameters, positions, ")");
+            return aborting != null ? aborting : new CompiledFormula.BuiltinCall("float", parameters, positions);
         }
-        if (s.equals("mapping")) {
-            Object param1 = parsePriority0();
-            if (param1 == null || !nextToken().equals(",")) {
-                incorrectParameters(s);
-                return null;
-            }
-            Object param2 = parsePriority0();
-            if (param2 == null || !nextToken().equals(")")) {
-                incorrectParameters(s);
-                return null;
-            }
-            String input = param1.toString();
-            String rule = param2.toString();
-            return actions.mapping(input, rule);
+        if (s.equals("mapping") || s.equals("isExecutorInGroup")) {
+            Expression aborting = parseParameters(s, parameters, positions, ",", ")");
+            return aborting != null ? aborting : new CompiledFormula.BuiltinCall(s, parameters, positions);
         }
         if (s.equals("number_to_short_string_ru")) {
-            Object param1 = parsePriority0();
-            if (param1 == null || !nextToken().equals(",")) {
-                incorrectParameters(s);
-                return null;
-            }
-            Object param2 = parsePriority0();
-            if (param2 == null || !nextToken().equals(",")) {
-                incorrectParameters(s);
-                return null;
-            }
-            Object param3 = parsePriority0();
-            if (param3 == null || !nextToken().equals(",")) {
-                incorrectParameters(s);
-                return null;
-            }
-            Object param4 = parsePriority0();
-            if (param4 == null || !nextToken().equals(",")) {
-                incorrectParameters(s);
-                return null;
-            }
-            Object param5 = parsePriority0();
-            if (param5 == null || !nextToken().equals(")")) {
-                incorrectParameters(s);
-                return null;
-            }
-            Long number = (Long) actions.translate(param1, Long.class);
-            int p = -1;
-            if (param2.toString().equals("M")) {
-                p = 0;
-            }
-            if (param2.toString().equals("F")) {
-                p = 1;
-            }
-            if (p == -1 || number == null) {
-                incorrectParameters(s);
-                return null;
-            }
-            String s1 = param3.toString();
-            String s2 = param4.toString();
-            String s3 = param5.toString();
-            return NumberToStringRu.numberToShortString(number, new NumberToStringRu.Word(p, new String[] { s1, s2, s3 }));
-        }
-        if (s.equals("isExecutorInGroup")) {
-            Object param1 = parsePriority0();
-            if (param1 == null || !nextToken().equals(",")) {
-                incorrectParameters(s);
-                return null;
-            }
-            Group group;
-            try {
-                group = TypeConversionUtil.convertTo(Group.class, param1);
-            } catch (Exception e) {
-                error("param1 cannot is not group: " + e);
-                return null;
-            }
-            Object param2 = parsePriority0();
-            if (param2 == null || !nextToken().equals(")")) {
-                incorrectParameters(s);
-                return null;
-            }
-            Executor executor;
-            try {
-                executor = TypeConversionUtil.convertTo(Executor.class, param2);
-            } catch (Exception e) {
-                error("param2 cannot is not executor: " + e);
-                return null;
-            }
-            return ApplicationContextFactory.getExecutorDAO().isExecutorInGroup(executor, group);
+            Expression aborting = parseParameters(s, parameters, positions, ",", ",", ",", ",", ")");
+            return aborting != null ? aborting : new CompiledFormula.BuiltinCall(s, parameters, positions);
         }
         Function<? extends Object> function = FormulaActionHandlerOperations.getFunction(s);
         if (function != null) {
-            List<Object> parameters = Lists.newArrayList();
             String token;
             do {
-                Object param = parsePriority0();
+                Expression param = parsePriority0();
+                if (aborted) {
+                    return param;
+                }
                 parameters.add(param);
                 token = nextToken();
                 if (token == null) {
@@ -777,13 +471,33 @@ public class FormulaActionHandler extends ActionHandlerBase {
                             "Unable to parse function " + function + " parameters from configuration: " + configuration);
                 }
             } while (!token.equals(")"));
-            return function.execute(parameters.toArray(new Object[parameters.size()]));
+            return new CompiledFormula.FunctionCall(function, parameters);
+        }
+        return error(null);
+    }
+
+    /**
+     * Parses function parameters, each followed by corresponding delimiter.
+     *
+     * @return null if parameters is parsed or expression, aborting statement at error position.
+     */
+    private Expression parseParameters(String function, List<Expression> parameters, List<Integer> positions, String... delimiters) {
+        for (String delimiter : delimiters) {
+            Expression parameter = parsePriority0();
+            if (aborted) {
+                return parameter;
+            }
+            parameters.add(parameter);
+            positions.add(nowPosition);
+            if (!delimiter.equals(nextToken())) {
+                return incorrectParameters(function);
+            }
         }
         return null;
     }
 
-    private void incorrectParameters(String function) {
-        error("Incorrect parameters for " + function + " function at position " + nowPosition);
+    private Expression incorrectParameters(String function) {
+        return error("Incorrect parameters for " + function + " function at position " + nowPosition);
     }
 
     private Object tryParseNumericalValue(String s) {
@@ -827,16 +541,23 @@ public class FormulaActionHandler extends ActionHandlerBase {
         return null;
     }
 
-    private void error(String message) {
-        String details = "Incorrect formula in " + context.getProcess().toString() + " -> " + new String(formula);
-        if (message != null) {
-            details += "\n - " + message;
-        }
-        if (SystemProperties.isFormulaHandlerInStrictMode()) {
-            throw new RuntimeException(details);
-        } else {
-            log.warn(details);
-        }
+    /**
+     * Stops statement parsing at error position.
+     *
+     * @param message
+     *            Error message or null, if statement must be aborted silently.
+     * @return Expression, reporting error when evaluation reaches error position.
+     */
+    private Expression error(String message) {
+        aborted = true;
+        return new CompiledFormula.Abort(message);
+    }
+
+    /**
+     * Stops statement parsing at error position after already parsed expression.
+     */
+    private Expression error(Expression parsed, String message) {
+        return new CompiledFormula.Binary(Operator.SEQUENCE, parsed, error(message));
     }
 
 }
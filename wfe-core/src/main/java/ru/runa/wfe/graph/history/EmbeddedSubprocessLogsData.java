@@ -39,33 +39,54 @@ public class EmbeddedSubprocessLogsData {
      */
     private final ProcessInstanceData processDefinitionData;
 
+    /**
+     * Embedded subprocess, which logs is added now, or null for main process.
+     */
+    private String lastEmbeddedSubprocess;
+
     public EmbeddedSubprocessLogsData(List<ProcessLog> processLogs, TransitionLogData transitionData, ProcessInstanceData processDefinition) {
-        this.transitionData = transitionData;
-        this.processDefinitionData = processDefinition;
+        this(transitionData, processDefinition);
         /*
          * if (correctLogsTokenId(processLogs)) {
          * processLogsByTokenId(processLogs); } else {
          */
-        processLogsWithoutTokenId(processLogs);
+        for (ProcessLog log : processLogs) {
+            addLog(log, true);
+        }
         // }
     }
 
-    private void processLogsWithoutTokenId(List<ProcessLog> processLogs) {
-        String lastEmbeddedSubprocess = null;
-        for (ProcessLog log : processLogs) {
-            if (!Strings.isNullOrEmpty(log.getNodeId())) {
-                lastEmbeddedSubprocess = processDefinitionData.checkEmbeddedSubprocess(log.getNodeId());
-            }
-            if (lastEmbeddedSubprocess == null) {
+    public EmbeddedSubprocessLogsData(TransitionLogData transitionData, ProcessInstanceData processDefinition) {
+        this.transitionData = transitionData;
+        this.processDefinitionData = processDefinition;
+    }
+
+    /**
+     * Splits next process log to main process or embedded subprocess logs.
+     * 
+     * @param log
+     *            Process log, logs must be added in creation order.
+     * @param store
+     *            Flag, equals to true, if log must be stored; otherwise log is used only to track current embedded subprocess (first log of process
+     *            or subprocess is stored anyway).
+     */
+    public void addLog(ProcessLog log, boolean store) {
+        if (!Strings.isNullOrEmpty(log.getNodeId())) {
+            lastEmbeddedSubprocess = processDefinitionData.checkEmbeddedSubprocess(log.getNodeId());
+        }
+        if (lastEmbeddedSubprocess == null) {
+            if (store || processLogsWithoutEmbedded.isEmpty()) {
                 this.processLogsWithoutEmbedded.add(log);
-            } else {
-                ArrayList<ProcessLog> logs = embeddedSubprocessesLogs.get(lastEmbeddedSubprocess);
-                if (logs == null) {
-                    logs = new ArrayList<ProcessLog>();
-                    embeddedSubprocessesLogs.put(lastEmbeddedSubprocess, logs);
-                }
-                logs.add(log);
             }
+        } else {
+            ArrayList<ProcessLog> logs = embeddedSubprocessesLogs.get(lastEmbeddedSubprocess);
+            if (logs == null) {
+                logs = new ArrayList<ProcessLog>();
+                embeddedSubprocessesLogs.put(lastEmbeddedSubprocess, logs);
+            } else if (!store) {
+                return;
+            }
+            logs.add(log);
         }
     }
 
@@ -17,6 +17,7 @@
  */
 package ru.runa.wfe.graph.history;
 
+import java.util.Iterator;
 import java.util.List;
 
 import ru.runa.wfe.audit.ProcessLog;
@@ -49,6 +50,11 @@ public class GraphHistoryBuilder {
         this.data = new GraphHistoryBuilderData(executors, processInstance, processDefinition, fullProcessLogs, subProcessId);
     }
 
+    public GraphHistoryBuilder(List<Executor> executors, Process processInstance, ProcessDefinition processDefinition,
+            Iterator<ProcessLog> fullProcessLogs, String subProcessId) {
+        this.data = new GraphHistoryBuilderData(executors, processInstance, processDefinition, fullProcessLogs, subProcessId);
+    }
+
     /**
      * Creates graph history as image.
      * 
@@ -1,6 +1,7 @@
 package ru.runa.wfe.graph.history;
 
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 
 import ru.runa.wfe.audit.NodeEnterLog;
@@ -74,20 +75,50 @@ public class GraphHistoryBuilderData {
             this.executors.put(executor.getName(), executor);
         }
         embeddedLogsParser = new EmbeddedSubprocessLogsData(fullProcessLogs, transitions, getProcessInstanceData());
-        processLogs = prepareLogs(fullProcessLogs, subProcessId);
+        processLogs = prepareLogs(subProcessId);
     }
 
     /**
-     * Parse process instance logs and fill model data.
+     * Creates model to parse and store data, required to build history from
+     * logs. Logs are consumed incrementally; only logs, required to build
+     * history (node, task and transition logs) are kept in memory.
      * 
+     * @param executors
+     *            Executors, defined in system.
+     * @param processDefinition
+     *            Process definition.
      * @param fullProcessLogs
-     *            All logs for process instance.
+     *            All logs for process instance in creation order.
+     * @param subProcessId
+     *            Subprocess name, if history for embedded subprocess is
+     *            required.
+     */
+    public GraphHistoryBuilderData(List<Executor> executors, Process processInstance, ProcessDefinition processDefinition,
+            Iterator<ProcessLog> fullProcessLogs, String subProcessId) {
+        processInstanceData = new ProcessInstanceData(processInstance, processDefinition);
+        transitions = new TransitionLogData();
+        for (Executor executor : executors) {
+            this.executors.put(executor.getName(), executor);
+        }
+        embeddedLogsParser = new EmbeddedSubprocessLogsData(transitions, getProcessInstanceData());
+        while (fullProcessLogs.hasNext()) {
+            ProcessLog processLog = fullProcessLogs.next();
+            transitions.addLog(processLog);
+            boolean store = processLog instanceof NodeLog || processLog instanceof TaskLog || processLog instanceof TransitionLog;
+            embeddedLogsParser.addLog(processLog, store);
+        }
+        processLogs = prepareLogs(subProcessId);
+    }
+
+    /**
+     * Parse process instance logs and fill model data.
+     * 
      * @param subProcessId
      *            Subprocess name, if history for embedded subprocess is
      *            required.
      * @return Returns logs to build history.
      */
-    private List<ProcessLog> prepareLogs(List<ProcessLog> fullProcessLogs, String subProcessId) {
+    private List<ProcessLog> prepareLogs(String subProcessId) {
         final boolean isForEmbeddedSubprocess = subProcessId != null && !"null".equals(subProcessId);
         List<ProcessLog> processLogForProcessing = embeddedLogsParser.getProcessLogs(subProcessId);
         for (ProcessLog processLog : processLogForProcessing) {
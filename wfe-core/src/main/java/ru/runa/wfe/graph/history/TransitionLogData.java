@@ -28,17 +28,29 @@ public class TransitionLogData {
      */
     private final List<TransitionLog> transitionLogs = Lists.newArrayList();
 
+    public TransitionLogData() {
+    }
+
     public TransitionLogData(List<ProcessLog> processLogs) {
-        super();
         for (ProcessLog log : processLogs) {
-            if (!(log instanceof TransitionLog)) {
-                continue;
-            }
-            TransitionLog transitionLog = (TransitionLog) log;
-            getTransitionLogs().add(transitionLog);
-            addToArrayMap(fromNodeToTransition, transitionLog.getFromNodeId(), transitionLog);
-            addToArrayMap(toNodeToTransition, transitionLog.getToNodeId(), transitionLog);
+            addLog(log);
+        }
+    }
+
+    /**
+     * Registers process log; non-transition logs are ignored.
+     * 
+     * @param log
+     *            Process log, logs must be added in creation order.
+     */
+    public void addLog(ProcessLog log) {
+        if (!(log instanceof TransitionLog)) {
+            return;
         }
+        TransitionLog transitionLog = (TransitionLog) log;
+        getTransitionLogs().add(transitionLog);
+        addToArrayMap(fromNodeToTransition, transitionLog.getFromNodeId(), transitionLog);
+        addToArrayMap(toNodeToTransition, transitionLog.getToNodeId(), transitionLog);
     }
 
     /**
@@ -28,6 +28,8 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 import javax.imageio.ImageIO;
 
@@ -39,9 +41,17 @@ import ru.runa.wfe.graph.image.figure.TransitionFigure;
 import ru.runa.wfe.lang.ProcessDefinition;
 
 import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader.InvalidCacheLoadException;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 public class GraphImage {
     private static final String FORMAT = "png";
+    /**
+     * Decoded definition graph images, drawn under figures in edging mode.
+     */
+    private static final Cache<ProcessDefinition, BufferedImage> definitionImages = CacheBuilder.newBuilder().weakKeys().build();
     private BufferedImage origImage = null;
     private final ProcessDefinition processDefinition;
     private final Map<TransitionFigure, RenderHits> transitions;
@@ -49,10 +59,8 @@ public class GraphImage {
     private final boolean useEdgingOnly = DrawProperties.useEdgingOnly();
 
     public GraphImage(ProcessDefinition processDefinition, Map<TransitionFigure, RenderHits> transitions, Map<AbstractFigure, RenderHits> nodes) {
-        try {
-            origImage = ImageIO.read(new ByteArrayInputStream(processDefinition.getGraphImageBytesNotNull()));
-        } catch (IOException e) {
-            Throwables.propagate(e);
+        if (useEdgingOnly) {
+            origImage = getDefinitionImage(processDefinition);
         }
         this.processDefinition = processDefinition;
         this.transitions = transitions;
@@ -98,6 +106,23 @@ public class GraphImage {
         return outputStream.toByteArray();
     }
 
+    private static BufferedImage getDefinitionImage(final ProcessDefinition processDefinition) {
+        try {
+            return definitionImages.get(processDefinition, new Callable<BufferedImage>() {
+
+                @Override
+                public BufferedImage call() throws IOException {
+                    return ImageIO.read(new ByteArrayInputStream(processDefinition.getGraphImageBytesNotNull()));
+                }
+            });
+        } catch (InvalidCacheLoadException e) {
+            // image format is not supported
+            return null;
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
     private void drawAbstractFigure(Graphics2D graphics, AbstractFigure figure, RenderHits hits, Stroke stroke) {
         if (useEdgingOnly) {
             graphics.setStroke(new BasicStroke(DrawProperties.FIGURE_CLEAN_WIDTH));
@@ -1,8 +1,14 @@
 package ru.runa.wfe.job.dao;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.querydsl.core.Tuple;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import org.hibernate.LockMode;
 import org.springframework.stereotype.Component;
+import ru.runa.wfe.commons.SystemProperties;
 import ru.runa.wfe.commons.dao.GenericDao;
 import ru.runa.wfe.execution.ExecutionStatus;
 import ru.runa.wfe.execution.Process;
@@ -28,11 +34,57 @@ public class JobDao extends GenericDao<Job> {
                 .fetch();
     }
 
+    /**
+     * Loads identities of expired jobs, grouped by process. Processes and jobs are ordered by due date.
+     * 
+     * @param limit
+     *            max jobs count to load.
+     * @return map from process id to jobs ids.
+     */
+    public Map<Long, List<Long>> getExpiredJobIdsByProcess(int limit) {
+        QJob j = QJob.job;
+        List<Tuple> tuples = queryFactory.select(j.id, j.process.id).from(j)
+                .where(j.dueDate.loe(new Date()).and(j.token.executionStatus.eq(ExecutionStatus.ACTIVE)))
+                .orderBy(j.dueDate.asc(), j.id.asc())
+                .limit(limit)
+                .fetch();
+        Map<Long, List<Long>> result = Maps.newLinkedHashMap();
+        for (Tuple tuple : tuples) {
+            Long processId = tuple.get(j.process.id);
+            List<Long> jobIds = result.get(processId);
+            if (jobIds == null) {
+                jobIds = Lists.newArrayList();
+                result.put(processId, jobIds);
+            }
+            jobIds.add(tuple.get(j.id));
+        }
+        return result;
+    }
+
+    /**
+     * Loads job with pessimistic row lock (without waiting, if supported by database). Lock is held until transaction end, so job can't be executed
+     * concurrently by other cluster node.
+     * 
+     * @return job or <code>null</code> if job is already removed.
+     */
+    public Job getForUpdate(Long id) {
+        return (Job) sessionFactory.getCurrentSession().get(Job.class, id, LockMode.UPGRADE_NOWAIT);
+    }
+
     public List<Job> findByProcess(Process process) {
         QJob j = QJob.job;
         return queryFactory.selectFrom(j).where(j.process.eq(process)).orderBy(j.dueDate.asc()).fetch();
     }
 
+    public List<Job> findByProcesses(List<Process> processes) {
+        List<Job> result = Lists.newArrayList();
+        QJob j = QJob.job;
+        for (List<Process> processesPart : Lists.partition(processes, SystemProperties.getDatabaseParametersCount())) {
+            result.addAll(queryFactory.selectFrom(j).where(j.process.in(processesPart)).orderBy(j.dueDate.asc()).fetch());
+        }
+        return result;
+    }
+
     public List<Job> findByProcessAndDeadlineExpressionContaining(Process process, String expression) {
         QJob j = QJob.job;
         return queryFactory.selectFrom(j).where(j.process.eq(process).and(j.dueDateExpression.like("%" + expression + "%"))).fetch();
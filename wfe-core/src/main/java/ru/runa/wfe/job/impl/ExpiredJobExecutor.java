@@ -0,0 +1,103 @@
+package ru.runa.wfe.job.impl;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hibernate.JDBCException;
+import org.hibernate.exception.LockAcquisitionException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+import ru.runa.wfe.commons.ApplicationContextFactory;
+import ru.runa.wfe.definition.dao.ProcessDefinitionLoader;
+import ru.runa.wfe.execution.ExecutionContext;
+import ru.runa.wfe.execution.ExecutionStatus;
+import ru.runa.wfe.job.Job;
+import ru.runa.wfe.job.dao.JobDao;
+import ru.runa.wfe.lang.ProcessDefinition;
+
+/**
+ * Claims and executes single expired job in separate transaction. Used by {@link JobExecutor} worker threads.
+ */
+public class ExpiredJobExecutor {
+    protected final Log log = LogFactory.getLog(getClass());
+
+    @Autowired
+    private JobDao jobDao;
+    @Autowired
+    private ProcessDefinitionLoader processDefinitionLoader;
+
+    @Transactional(readOnly = true)
+    public Map<Long, List<Long>> getExpiredJobIds(int limit) {
+        return jobDao.getExpiredJobIdsByProcess(limit);
+    }
+
+    /**
+     * Locks job row and executes job, if it's still expired. Job is skipped, if it was already executed (or rescheduled) by other thread or cluster
+     * node.
+     * 
+     * @throws JobLockedException
+     *             if job row is locked by other transaction. Other database errors are propagated as is.
+     */
+    @Transactional
+    public void execute(Long jobId) {
+        Job job;
+        try {
+            job = jobDao.getForUpdate(jobId);
+        } catch (JDBCException e) {
+            if (isLockConflict(e)) {
+                throw new JobLockedException(jobId, e);
+            }
+            throw e;
+        }
+        if (job == null || job.getDueDate().after(new Date()) || job.getToken().getExecutionStatus() != ExecutionStatus.ACTIVE) {
+            log.debug("Job " + jobId + " is already executed, skipping");
+            return;
+        }
+        log.debug("executing " + job);
+        ProcessDefinition processDefinition = processDefinitionLoader.getDefinition(job.getProcess().getDeployment().getId());
+        ExecutionContext executionContext = new ExecutionContext(processDefinition, job.getToken());
+        job.execute(executionContext);
+    }
+
+    /**
+     * Checks, if error is caused by row lock conflict. Not all Hibernate dialects convert lock conflicts to {@link LockAcquisitionException}, so
+     * vendor error codes of NOWAIT lock failures are checked too.
+     */
+    private static boolean isLockConflict(JDBCException e) {
+        if (e instanceof LockAcquisitionException) {
+            return true;
+        }
+        int errorCode = e.getErrorCode();
+        switch (ApplicationContextFactory.getDBType()) {
+        case POSTGRESQL:
+            return "55P03".equals(e.getSQLState());
+        case ORACLE:
+            // ORA-00054: resource busy and acquire with NOWAIT specified, ORA-30006: resource busy; acquire with WAIT timeout expired
+            return errorCode == 54 || errorCode == 30006;
+        case MSSQL:
+            // lock request time out period exceeded
+            return errorCode == 1222;
+        case MYSQL:
+            // lock wait timeout exceeded, NOWAIT is set and row is locked
+            return errorCode == 1205 || errorCode == 3572;
+        case H2:
+            // lock timeout
+            return errorCode == 50200;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Job row is locked by other transaction.
+     */
+    static class JobLockedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        JobLockedException(Long jobId, Throwable cause) {
+            super("Job " + jobId + " is locked by other executor", cause);
+        }
+    }
+}
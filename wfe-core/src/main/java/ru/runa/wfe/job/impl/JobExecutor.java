@@ -1,38 +1,115 @@
 package ru.runa.wfe.job.impl;
 
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.transaction.annotation.Transactional;
-import ru.runa.wfe.definition.dao.ProcessDefinitionLoader;
-import ru.runa.wfe.execution.ExecutionContext;
-import ru.runa.wfe.job.Job;
-import ru.runa.wfe.job.dao.JobDao;
-import ru.runa.wfe.lang.ProcessDefinition;
-
-public class JobExecutor {
+import ru.runa.wfe.commons.SystemProperties;
+import ru.runa.wfe.job.impl.ExpiredJobExecutor.JobLockedException;
+
+/**
+ * Executes expired jobs. Jobs are claimed in bounded batches and executed on worker pool, each job in own transaction. Jobs of one process are
+ * executed sequentially by one worker; jobs of different processes are executed in parallel.
+ */
+public class JobExecutor implements DisposableBean {
     protected final Log log = LogFactory.getLog(getClass());
 
+    private final ExecutorService executorService = Executors.newFixedThreadPool(SystemProperties.getJobExecutorThreadsCount(),
+            new ThreadFactoryBuilder().setNameFormat("job-executor-%d").setDaemon(true).build());
+
     @Autowired
-    private JobDao jobDao;
-    @Autowired
-    private ProcessDefinitionLoader processDefinitionLoader;
+    private ExpiredJobExecutor expiredJobExecutor;
 
-    @Transactional
     public void execute() {
-        List<Job> jobs = jobDao.getExpiredJobs();
-        log.debug("Expired jobs: " + jobs.size());
-        for (Job job : jobs) {
-            try {
-                log.debug("executing " + job);
-                ProcessDefinition processDefinition = processDefinitionLoader.getDefinition(job.getProcess().getDeployment().getId());
-                ExecutionContext executionContext = new ExecutionContext(processDefinition, job.getToken());
-                job.execute(executionContext);
-            } catch (Exception e) {
-                log.error("Error executing job " + job, e);
+        int batchSize = SystemProperties.getJobExecutorBatchSize();
+        while (true) {
+            Map<Long, List<Long>> jobIdsByProcess = expiredJobExecutor.getExpiredJobIds(batchSize);
+            int jobsCount = 0;
+            for (List<Long> jobIds : jobIdsByProcess.values()) {
+                jobsCount += jobIds.size();
+            }
+            log.debug("Expired jobs: " + jobsCount);
+            List<Future<List<JobResult>>> futures = Lists.newArrayListWithExpectedSize(jobIdsByProcess.size());
+            for (final List<Long> jobIds : jobIdsByProcess.values()) {
+                futures.add(executorService.submit(new Callable<List<JobResult>>() {
+
+                    @Override
+                    public List<JobResult> call() {
+                        List<JobResult> results = Lists.newArrayListWithExpectedSize(jobIds.size());
+                        for (Long jobId : jobIds) {
+                            results.add(execute(jobId));
+                        }
+                        return results;
+                    }
+                }));
+            }
+            int processedCount = 0;
+            boolean success = true;
+            for (Future<List<JobResult>> future : futures) {
+                try {
+                    for (JobResult result : future.get()) {
+                        if (result == JobResult.PROCESSED) {
+                            processedCount++;
+                        } else if (result == JobResult.FAILED) {
+                            success = false;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException e) {
+                    log.error("Error executing jobs", e.getCause());
+                    success = false;
+                }
+            }
+            // failed jobs stay expired and jobs, locked by other cluster node, are selected again, so draining stops until next execution to
+            // avoid busy loop
+            if (jobsCount < batchSize || processedCount == 0 || !success) {
+                break;
             }
         }
     }
 
+    private JobResult execute(Long jobId) {
+        try {
+            expiredJobExecutor.execute(jobId);
+            return JobResult.PROCESSED;
+        } catch (Exception e) {
+            for (Throwable th : Throwables.getCausalChain(e)) {
+                if (th instanceof JobLockedException) {
+                    log.debug(th.getMessage() + ": " + th.getCause());
+                    return JobResult.LOCKED;
+                }
+            }
+            log.error("Error executing job " + jobId, e);
+            return JobResult.FAILED;
+        }
+    }
+
+    private enum JobResult {
+        /**
+         * Job is executed or skipped as already executed.
+         */
+        PROCESSED,
+        /**
+         * Job is locked by other cluster node.
+         */
+        LOCKED,
+        FAILED
+    }
+
+    @Override
+    public void destroy() {
+        executorService.shutdownNow();
+    }
 }
@@ -0,0 +1,30 @@
+package ru.runa.wfe.job.impl;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import ru.runa.wfe.commons.SystemProperties;
+import ru.runa.wfe.var.file.LocalFileSystemStorage;
+
+/**
+ * Removes content of content-addressed local file storage, which is not referenced by file variables anymore.
+ */
+public class UnusedFileContentCleaner {
+    protected final Log log = LogFactory.getLog(getClass());
+
+    public void execute() {
+        if (!SystemProperties.isLocalFileStorageEnabled() || !SystemProperties.isLocalFileStorageContentAddressed()) {
+            return;
+        }
+        try {
+            int count = LocalFileSystemStorage.removeUnusedContent(TimeUnit.HOURS.toMillis(1));
+            log.debug("Removed " + count + " unused content files");
+        } catch (IOException e) {
+            log.error("Unable to remove unused content files", e);
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * This file is part of the RUNA WFE project.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; version 2.1
+ * of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+package ru.runa.wfe.presentation;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import com.google.common.base.Objects;
+
+/**
+ * Position in list, loaded by {@link BatchPresentation} with keyset paging. Holds sort fields values and identity of last loaded row; next page
+ * starts right after this row. Cursor is valid only for {@link BatchPresentation} with same sorting, as used to load previous page.
+ */
+public class KeysetCursor implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Identity of last loaded row.
+     */
+    private Long lastId;
+
+    /**
+     * Values of sorted fields for last loaded row (in {@link BatchPresentation#getSortedFields()} order). May be null, if position is defined
+     * only by row identity.
+     */
+    private Object[] sortValues;
+
+    /**
+     * Position in fully loaded list, used instead of sort values then list can't be loaded with keyset paging. Null for keyset cursors.
+     */
+    private Integer offset;
+
+    public KeysetCursor() {
+    }
+
+    public KeysetCursor(Long lastId, Object[] sortValues) {
+        this.lastId = lastId;
+        this.sortValues = sortValues;
+    }
+
+    public KeysetCursor(Long lastId, int offset) {
+        this.lastId = lastId;
+        this.offset = offset;
+    }
+
+    public Long getLastId() {
+        return lastId;
+    }
+
+    public Object[] getSortValues() {
+        return sortValues;
+    }
+
+    public Integer getOffset() {
+        return offset;
+    }
+
+    /**
+     * Checks, if cursor holds position in fully loaded list instead of sort values.
+     */
+    public boolean isOffset() {
+        return offset != null;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof KeysetCursor)) {
+            return false;
+        }
+        KeysetCursor other = (KeysetCursor) obj;
+        return Objects.equal(lastId, other.lastId) && Arrays.equals(sortValues, other.sortValues) && Objects.equal(offset, other.offset);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(lastId, Arrays.hashCode(sortValues), offset);
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("lastId", lastId).add("sortValues", Arrays.toString(sortValues)).add("offset", offset).toString();
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * This file is part of the RUNA WFE project.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; version 2.1
+ * of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+package ru.runa.wfe.presentation;
+
+import java.io.Serializable;
+import java.util.List;
+
+import com.google.common.base.Objects;
+
+/**
+ * Page of rows, loaded by {@link BatchPresentation} with keyset paging.
+ *
+ * @param <T>
+ *            Row type.
+ */
+public class KeysetPage<T> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private List<T> rows;
+
+    /**
+     * Cursor to load next page or null, if there is no more rows.
+     */
+    private KeysetCursor nextCursor;
+
+    public KeysetPage() {
+    }
+
+    public KeysetPage(List<T> rows, KeysetCursor nextCursor) {
+        this.rows = rows;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getRows() {
+        return rows;
+    }
+
+    public KeysetCursor getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasNextPage() {
+        return nextCursor != null;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("rows", rows == null ? 0 : rows.size()).add("nextCursor", nextCursor).toString();
+    }
+}
@@ -3,6 +3,7 @@ package ru.runa.wfe.presentation.hibernate;
 import java.util.List;
 
 import ru.runa.wfe.presentation.BatchPresentation;
+import ru.runa.wfe.presentation.KeysetPage;
 
 public interface BatchPresentationCompiler<T> {
 
@@ -23,4 +24,14 @@ public interface BatchPresentationCompiler<T> {
      * @return Loaded data rows count.
      */
     public int getCount(CompilerParameters parameters);
+
+    /**
+     * Load page of data according to {@link BatchPresentation} and provided compiler parameters using keyset paging: rows are loaded after position,
+     * set by {@link CompilerParameters#loadKeysetPage(ru.runa.wfe.presentation.KeysetCursor)}, page size is taken from {@link BatchPresentation}.
+     * 
+     * @param parameters
+     *            Parameters, used to build query for object loading. Must be created with keyset paging restriction.
+     * @return Loaded data page.
+     */
+    public KeysetPage<T> getKeysetPage(CompilerParameters parameters);
 }
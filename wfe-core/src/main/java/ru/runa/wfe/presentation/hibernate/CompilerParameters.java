@@ -20,6 +20,8 @@ package ru.runa.wfe.presentation.hibernate;
 import java.util.Collection;
 import java.util.List;
 import ru.runa.wfe.InternalApplicationException;
+import ru.runa.wfe.presentation.BatchPresentation;
+import ru.runa.wfe.presentation.KeysetCursor;
 import ru.runa.wfe.security.Permission;
 import ru.runa.wfe.security.SecuredObjectType;
 import ru.runa.wfe.task.Task;
@@ -65,6 +67,12 @@ public class CompilerParameters {
      */
     private final boolean onlyIdentityLoad;
 
+    /**
+     * Keyset paging restriction. If set, query loads object identity with sorted fields values and starts after position, stored in restriction.
+     * May be null, if keyset paging is not used.
+     */
+    private final KeysetRestriction keysetRestriction;
+
     /**
      * Creates parameter object for building HQL query using other {@linkplain CompilerParameters} as source. Copy all parameters from source
      * {@linkplain CompilerParameters}, except isCountQuery flag.
@@ -85,6 +93,7 @@ public class CompilerParameters {
         this.requestedClass = src.requestedClass;
         this.idRestriction = src.idRestriction;
         this.onlyIdentityLoad = src.onlyIdentityLoad;
+        this.keysetRestriction = isCountQuery ? null : src.keysetRestriction;
     }
 
     /**
@@ -101,6 +110,7 @@ public class CompilerParameters {
         this.requestedClass = null;
         this.idRestriction = null;
         this.onlyIdentityLoad = false;
+        this.keysetRestriction = null;
     }
 
     /**
@@ -120,6 +130,7 @@ public class CompilerParameters {
         this.requestedClass = src.requestedClass;
         this.idRestriction = src.idRestriction;
         this.onlyIdentityLoad = src.onlyIdentityLoad;
+        this.keysetRestriction = src.keysetRestriction;
     }
 
     /**
@@ -139,6 +150,7 @@ public class CompilerParameters {
         this.requestedClass = src.requestedClass;
         this.idRestriction = src.idRestriction;
         this.onlyIdentityLoad = src.onlyIdentityLoad;
+        this.keysetRestriction = src.keysetRestriction;
     }
 
     /**
@@ -158,6 +170,7 @@ public class CompilerParameters {
         this.requestedClass = requestedClass;
         this.idRestriction = src.idRestriction;
         this.onlyIdentityLoad = src.onlyIdentityLoad;
+        this.keysetRestriction = src.keysetRestriction;
     }
 
     /**
@@ -175,6 +188,27 @@ public class CompilerParameters {
         this.requestedClass = src.requestedClass;
         this.idRestriction = src.idRestriction;
         this.onlyIdentityLoad = true;
+        this.keysetRestriction = src.keysetRestriction;
+    }
+
+    /**
+     * Creates parameter object for building HQL query using other {@linkplain CompilerParameters} as source. Copy all parameters from source
+     * {@linkplain CompilerParameters}, and set keyset paging restriction.
+     * 
+     * @param src
+     *            {@linkplain CompilerParameters} to copy parameters from.
+     * @param keysetRestriction
+     *            Keyset paging restriction.
+     */
+    private CompilerParameters(CompilerParameters src, KeysetRestriction keysetRestriction) {
+        this.ownersRestrictions = src.ownersRestrictions;
+        this.enablePaging = src.enablePaging;
+        this.isCountQuery = src.isCountQuery;
+        this.permissionRestrictions = src.permissionRestrictions;
+        this.requestedClass = src.requestedClass;
+        this.idRestriction = src.idRestriction;
+        this.onlyIdentityLoad = src.onlyIdentityLoad;
+        this.keysetRestriction = keysetRestriction;
     }
 
     /**
@@ -194,6 +228,7 @@ public class CompilerParameters {
         this.requestedClass = src.requestedClass;
         this.idRestriction = idRestriction.idRestriction;
         this.onlyIdentityLoad = src.onlyIdentityLoad;
+        this.keysetRestriction = src.keysetRestriction;
     }
 
     /**
@@ -273,6 +308,24 @@ public class CompilerParameters {
         return onlyIdentityLoad;
     }
 
+    /**
+     * Check, if keyset paging is used. In this case query returns rows in form [object id, sorted fields values...] instead of objects.
+     * 
+     * @return true, if keyset paging is used.
+     */
+    public boolean isKeysetLoad() {
+        return keysetRestriction != null;
+    }
+
+    /**
+     * Position, after which objects must be loaded in keyset paging mode.
+     * 
+     * @return Keyset paging position or null, if first page must be loaded (or keyset paging is not used).
+     */
+    public KeysetCursor getKeysetCursor() {
+        return keysetRestriction == null ? null : keysetRestriction.after;
+    }
+
     /**
      * Creates compiler parameters for simple object's loading without any restrictions.
      * 
@@ -362,6 +415,18 @@ public class CompilerParameters {
         return new CompilerParameters(this, new OnlyIdentity());
     }
 
+    /**
+     * Creates compiler parameters some as current and add keyset paging restriction. Page size is taken from {@link BatchPresentation}; page number
+     * is ignored.
+     * 
+     * @param after
+     *            Position, after which objects must be loaded. May be null to load first page.
+     * @return Returns batch presentation compiler parameters.
+     */
+    public CompilerParameters loadKeysetPage(KeysetCursor after) {
+        return new CompilerParameters(this, new KeysetRestriction(after));
+    }
+
     /**
      * Dummy class for only identity parameter fluent interface.
      */
@@ -376,4 +441,12 @@ public class CompilerParameters {
             this.idRestriction = idRestrictions;
         }
     }
+
+    private static class KeysetRestriction {
+        final KeysetCursor after;
+
+        KeysetRestriction(KeysetCursor after) {
+            this.after = after;
+        }
+    }
 }
@@ -25,7 +25,9 @@ import java.util.Map;
 import java.util.Objects;
 import org.hibernate.Hibernate;
 import org.springframework.util.Assert;
+import ru.runa.wfe.InternalApplicationException;
 import ru.runa.wfe.commons.ApplicationContextFactory;
+import ru.runa.wfe.commons.DbType;
 import ru.runa.wfe.commons.querydsl.HibernateQueryFactory;
 import ru.runa.wfe.presentation.BatchPresentation;
 import ru.runa.wfe.presentation.ClassPresentation;
@@ -33,6 +35,7 @@ import ru.runa.wfe.presentation.DbSource.AccessType;
 import ru.runa.wfe.presentation.FieldDescriptor;
 import ru.runa.wfe.presentation.FieldFilterMode;
 import ru.runa.wfe.presentation.FieldState;
+import ru.runa.wfe.presentation.KeysetCursor;
 import ru.runa.wfe.presentation.filter.FilterCriteria;
 import ru.runa.wfe.security.Permission;
 import ru.runa.wfe.security.PermissionSubstitutions;
@@ -159,9 +162,14 @@ public class HibernateCompilerHqlBuider {
             query.append("select count (").append(ClassPresentation.classNameSQL).append(")");
         } else {
             query.append("select ").append(ClassPresentation.classNameSQL);
-            if (parameters.isOnlyIdentityLoad()) {
+            if (parameters.isOnlyIdentityLoad() || parameters.isKeysetLoad()) {
                 query.append(".id");
             }
+            if (parameters.isKeysetLoad()) {
+                for (String sortExpression : getKeysetSortExpressions()) {
+                    query.append(", ").append(sortExpression);
+                }
+            }
         }
         query.append(" from ");
         if (parameters.getQueriedClass() != null) {
@@ -202,6 +210,7 @@ public class HibernateCompilerHqlBuider {
         conditions.addAll(addFilters());
         conditions.addAll(addSecureCheck());
         conditions.addAll(addIdRestrictions());
+        conditions.addAll(addKeysetRestriction());
         query.append(" where (1=1)");
         for (String condition : conditions) {
             query.append(" and (").append(condition).append(")");
@@ -396,6 +405,136 @@ public class HibernateCompilerHqlBuider {
         return result;
     }
 
+    /**
+     * Generates expression to load only objects, placed after keyset cursor position. Nulls ordering depends on database: Oracle and PostgreSQL
+     * treat nulls as largest values, other databases as smallest.
+     * 
+     * @return List of string, represents expressions.
+     */
+    private List<String> addKeysetRestriction() {
+        List<String> result = new LinkedList<>();
+        KeysetCursor cursor = parameters.getKeysetCursor();
+        if (cursor == null) {
+            return result;
+        }
+        List<String> sortExpressions = getKeysetSortExpressions();
+        List<Boolean> sortModes = getKeysetSortModes();
+        Object[] values = cursor.getSortValues() == null ? new Object[0] : cursor.getSortValues();
+        if (cursor.isOffset() || values.length != sortExpressions.size()) {
+            throw new InternalApplicationException("Keyset cursor " + cursor + " does not match sorting of " + batchPresentation);
+        }
+        DbType dbType = ApplicationContextFactory.getDBType();
+        boolean nullsAreLargest = dbType == DbType.ORACLE || dbType == DbType.POSTGRESQL;
+        List<String> alternatives = new LinkedList<>();
+        StringBuilder equalPrefix = new StringBuilder("(1=1)");
+        for (int i = 0; i < sortExpressions.size(); i++) {
+            String expression = sortExpressions.get(i);
+            String placeholder = "keysetValue" + i;
+            boolean nullsAfter = sortModes.get(i) == nullsAreLargest;
+            if (values[i] != null) {
+                placeholders.addValue(placeholder, values[i]);
+                String after = expression + (sortModes.get(i) ? " > :" : " < :") + placeholder;
+                if (nullsAfter) {
+                    after = after + " or " + expression + " is null";
+                }
+                alternatives.add(equalPrefix + " and (" + after + ")");
+                equalPrefix.append(" and (").append(expression).append(" = :").append(placeholder).append(")");
+            } else {
+                if (!nullsAfter) {
+                    alternatives.add(equalPrefix + " and (" + expression + " is not null)");
+                }
+                equalPrefix.append(" and (").append(expression).append(" is null)");
+            }
+        }
+        placeholders.add("keysetId", cursor.getLastId());
+        alternatives.add(equalPrefix + " and (" + ClassPresentation.classNameSQL + ".id > :keysetId)");
+        StringBuilder restriction = new StringBuilder();
+        for (String alternative : alternatives) {
+            restriction.append(restriction.length() == 0 ? "(" : " or (").append(alternative).append(")");
+        }
+        result.add(restriction.toString());
+        return result;
+    }
+
+    /**
+     * Returns HQL expressions for sorted fields, used in keyset paging (in sorting order).
+     * 
+     * @return List of HQL expressions.
+     */
+    private List<String> getKeysetSortExpressions() {
+        List<String> result = new ArrayList<>();
+        for (FieldDescriptor field : getKeysetSortedFields()) {
+            result.add(field.dbSources[0].getValueDBPath(AccessType.ORDER, aliasMapping.getAlias(field)));
+        }
+        return result;
+    }
+
+    /**
+     * Returns sort modes (true for ascending) for sorted fields, used in keyset paging.
+     * 
+     * @return List of sort modes.
+     */
+    private List<Boolean> getKeysetSortModes() {
+        List<Boolean> result = new ArrayList<>();
+        FieldDescriptor[] sortedFields = batchPresentation.getSortedFields();
+        boolean[] fieldsToSortModes = batchPresentation.getFieldsToSortModes();
+        for (int i = 0; i < sortedFields.length; i++) {
+            if (isOrderAffects(sortedFields[i])) {
+                result.add(fieldsToSortModes[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns sorted fields, used in keyset paging. Fields with inheritance is sorted on SQL translation stage and can't be used in keyset paging.
+     * 
+     * @return List of sorted fields.
+     */
+    private List<FieldDescriptor> getKeysetSortedFields() {
+        List<FieldDescriptor> result = new ArrayList<>();
+        for (FieldDescriptor field : batchPresentation.getSortedFields()) {
+            if (!isOrderAffects(field)) {
+                continue;
+            }
+            if (isOrderByInheritance(field)) {
+                throw new InternalApplicationException("Keyset paging is not supported for sorting by field with inheritance: " + field.displayName);
+            }
+            result.add(field);
+        }
+        return result;
+    }
+
+    /**
+     * Check, if sorting by field affects HQL query.
+     */
+    private static boolean isOrderAffects(FieldDescriptor field) {
+        return field.sortable && field.fieldState != FieldState.DISABLED;
+    }
+
+    /**
+     * Check, if sorting by field must be handled in SQL translation stage.
+     */
+    private static boolean isOrderByInheritance(FieldDescriptor field) {
+        return field.dbSources[0].getValueDBPath(AccessType.ORDER, null) == null && field.dbSources.length > 1;
+    }
+
+    /**
+     * Check, if keyset paging may be used for {@link BatchPresentation}. Keyset paging is not supported for sorting by fields with inheritance.
+     * 
+     * @param batchPresentation
+     *            {@link BatchPresentation} to check.
+     * @return true, if keyset paging may be used.
+     */
+    public static boolean isKeysetPagingSupported(BatchPresentation batchPresentation) {
+        for (FieldDescriptor field : batchPresentation.getSortedFields()) {
+            if (isOrderAffects(field) && isOrderByInheritance(field)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Builds 'order by' clause of HQL query. This function doesn't build sorting for fields with inheritance. It must be handled in SQL translation
      * stage.
@@ -406,16 +545,16 @@ public class HibernateCompilerHqlBuider {
         }
         FieldDescriptor[] sortedFields = batchPresentation.getSortedFields();
         boolean[] fieldsToSortModes = batchPresentation.getFieldsToSortModes();
-        if (sortedFields.length == 0) {
+        if (sortedFields.length == 0 && !parameters.isKeysetLoad()) {
             return;
         }
         query.append(" order by");
         boolean needComma = false;
         for (int i = 0; i < sortedFields.length; i++) {
-            if (!sortedFields[i].sortable || sortedFields[i].fieldState == FieldState.DISABLED) {
+            if (!isOrderAffects(sortedFields[i])) {
                 continue;
             }
-            if (sortedFields[i].dbSources[0].getValueDBPath(AccessType.ORDER, null) == null && sortedFields[i].dbSources.length > 1) {
+            if (isOrderByInheritance(sortedFields[i])) {
                 isOrderByInheritance = true;
                 continue; // Fields with inheritance will be processed later
             }
@@ -424,5 +563,9 @@ public class HibernateCompilerHqlBuider {
             query.append(fieldsToSortModes[i] ? " asc" : " desc");
             needComma = true;
         }
+        if (parameters.isKeysetLoad()) {
+            // identity makes order unique, so keyset position is unambiguous
+            query.append(needComma ? ", " : " ").append(ClassPresentation.classNameSQL).append(".id asc");
+        }
     }
 }
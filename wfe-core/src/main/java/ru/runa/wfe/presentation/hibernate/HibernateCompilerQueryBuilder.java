@@ -74,6 +74,8 @@ public class HibernateCompilerQueryBuilder {
         String sqlRequest = translateToSQL();
         if (parameters.isCountQuery() || parameters.isOnlyIdentityLoad()) {
             return session.createSQLQuery(sqlRequest).setResultTransformer(CountIdResultTransformer.INSTANCE);
+        } else if (parameters.isKeysetLoad()) {
+            return session.createSQLQuery(sqlRequest).setResultTransformer(KeysetResultTransformer.INSTANCE);
         } else {
             SQLQuery query = session.createSQLQuery(sqlRequest);
             query.addEntity(batchPresentation.getType().getPresentationClass());
@@ -118,7 +120,7 @@ public class HibernateCompilerQueryBuilder {
      *            SQL request to tune select clause.
      */
     private StringBuilder tuneSelectClause(StringBuilder sqlRequest) {
-        if (parameters.isCountQuery() || parameters.isOnlyIdentityLoad()) {
+        if (parameters.isCountQuery() || parameters.isOnlyIdentityLoad() || parameters.isKeysetLoad()) {
             return sqlRequest;
         }
         int posDot = sqlRequest.indexOf(".");
@@ -145,4 +147,23 @@ public class HibernateCompilerQueryBuilder {
             return collection;
         }
     }
+
+    /**
+     * Used to load keyset page query. Returns tuple [object id; sorted fields values...] even if no fields is sorted.
+     */
+    static class KeysetResultTransformer implements ResultTransformer {
+        private static final long serialVersionUID = 1L;
+
+        public static final KeysetResultTransformer INSTANCE = new KeysetResultTransformer();
+
+        @Override
+        public Object transformTuple(Object[] tuple, String[] aliases) {
+            return tuple;
+        }
+
+        @Override
+        public List transformList(List collection) {
+            return collection;
+        }
+    }
 }
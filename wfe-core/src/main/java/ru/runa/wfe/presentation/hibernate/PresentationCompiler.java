@@ -17,10 +17,20 @@
  */
 package ru.runa.wfe.presentation.hibernate;
 
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import org.hibernate.Query;
+import org.hibernate.Session;
+import ru.runa.wfe.commons.ApplicationContextFactory;
+import ru.runa.wfe.commons.SystemProperties;
 import ru.runa.wfe.presentation.BatchPresentation;
 import ru.runa.wfe.presentation.BatchPresentationConsts;
+import ru.runa.wfe.presentation.KeysetCursor;
+import ru.runa.wfe.presentation.KeysetPage;
 
 /**
  * Creates {@link Query} to load data according to {@link BatchPresentation}.
@@ -53,6 +63,43 @@ public class PresentationCompiler<T> implements BatchPresentationCompiler<T> {
         return ((Number) getBatchQuery(new CompilerParameters(parameters, true)).uniqueResult()).intValue();
     }
 
+    @SuppressWarnings("unchecked")
+    @Override
+    public final KeysetPage<T> getKeysetPage(CompilerParameters parameters) {
+        Preconditions.checkArgument(parameters.isKeysetLoad(), "Keyset paging restriction is required");
+        List<Object[]> rows = getBatchQuery(parameters).list();
+        List<Long> ids = Lists.newArrayListWithExpectedSize(rows.size());
+        for (Object[] row : rows) {
+            ids.add(((Number) row[0]).longValue());
+        }
+        Map<Long, T> objects = Maps.newHashMapWithExpectedSize(ids.size());
+        String entityName = parameters.getQueriedClass() != null ? parameters.getQueriedClass().getName() : batchPresentation.getType()
+                .getPresentationClass().getName();
+        Session session = ApplicationContextFactory.getCurrentSession();
+        for (List<Long> partition : Lists.partition(ids, SystemProperties.getDatabaseParametersCount())) {
+            String hql = "select instance from " + entityName + " as instance where instance.id in (:ids)";
+            List<T> loaded = session.createQuery(hql).setParameterList("ids", partition).list();
+            for (T object : loaded) {
+                objects.put((Long) session.getIdentifier(object), object);
+            }
+        }
+        List<T> result = Lists.newArrayListWithExpectedSize(ids.size());
+        for (Long id : ids) {
+            // object may be deleted between queries
+            T object = objects.get(id);
+            if (object != null) {
+                result.add(object);
+            }
+        }
+        KeysetCursor nextCursor = null;
+        int rangeSize = batchPresentation.getRangeSize();
+        if (rangeSize != BatchPresentationConsts.RANGE_SIZE_UNLIMITED && rows.size() == rangeSize) {
+            Object[] lastRow = rows.get(rows.size() - 1);
+            nextCursor = new KeysetCursor(ids.get(ids.size() - 1), Arrays.copyOfRange(lastRow, 1, lastRow.length));
+        }
+        return new KeysetPage<>(result, nextCursor);
+    }
+
     /**
      * Creates query to load data from database.
      * 
@@ -64,7 +111,11 @@ public class PresentationCompiler<T> implements BatchPresentationCompiler<T> {
         HibernateCompilerQueryBuilder builder = new HibernateCompilerQueryBuilder(batchPresentation, compilerParams);
         Query query = builder.build();
         builder.getPlaceholders().apply(query);
-        if (compilerParams.isPagingEnabled() && batchPresentation.getRangeSize() != BatchPresentationConsts.RANGE_SIZE_UNLIMITED) {
+        if (compilerParams.isKeysetLoad()) {
+            if (batchPresentation.getRangeSize() != BatchPresentationConsts.RANGE_SIZE_UNLIMITED) {
+                query.setMaxResults(batchPresentation.getRangeSize());
+            }
+        } else if (compilerParams.isPagingEnabled() && batchPresentation.getRangeSize() != BatchPresentationConsts.RANGE_SIZE_UNLIMITED) {
             query.setFirstResult((batchPresentation.getPageNumber() - 1) * batchPresentation.getRangeSize());
             query.setMaxResults(batchPresentation.getRangeSize());
         }
@@ -45,6 +45,13 @@ public class QueryParametersMap {
         map.put(name, new QueryParameterValue(value, Hibernate.DATE, false));
     }
 
+    /**
+     * Adds parameter, which type is guessed by Hibernate from value class.
+     */
+    public void addValue(String name, Object value) {
+        map.put(name, new QueryParameterValue(value, null, false));
+    }
+
     public void add(String name, Collection<?> value) {
         map.put(name, new QueryParameterValue(value, null, true));
     }
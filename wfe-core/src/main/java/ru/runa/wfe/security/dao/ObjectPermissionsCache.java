@@ -0,0 +1,337 @@
+/*
+ * This file is part of the RUNA WFE project.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; version 2.1
+ * of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+package ru.runa.wfe.security.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.Transaction;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.Maps;
+
+import ru.runa.wfe.commons.SystemProperties;
+import ru.runa.wfe.commons.Utils;
+import ru.runa.wfe.commons.cache.CacheStatistic;
+import ru.runa.wfe.commons.cache.StatisticCounter;
+import ru.runa.wfe.security.Permission;
+import ru.runa.wfe.security.SecuredObjectType;
+
+/**
+ * Cache of permissions, issued on secured objects: for each (type, identity) contains permissions bitmask for every executor with permissions on
+ * object.
+ * <p/>
+ * Objects, changed by not completed transaction, are not cached and not returned from cache until transaction completion, so uncommitted changes
+ * is never visible to other transactions and changing transaction reads own changes from database. Data, loaded from database, is not cached if
+ * permissions was changed during loading.
+ */
+class ObjectPermissionsCache {
+    private static final Log log = LogFactory.getLog(ObjectPermissionsCache.class);
+    private static final StatisticCounter statistic = CacheStatistic.registerCacheCounter("objectPermissions");
+
+    /**
+     * Bit indexes for permissions in bitmask.
+     */
+    private static final ConcurrentMap<Permission, Integer> permissionBits = Maps.newConcurrentMap();
+    private static final AtomicInteger nextPermissionBit = new AtomicInteger();
+
+    private final ConcurrentMap<Key, ObjectPermissions> cache = Maps.newConcurrentMap();
+    /**
+     * Objects, changed by not completed transactions, with changing transactions count.
+     */
+    private final ConcurrentMap<Key, AtomicInteger> changingObjects = Maps.newConcurrentMap();
+    /**
+     * Count of not completed transactions, which changes permissions of unknown objects.
+     */
+    private final AtomicInteger changingAllObjects = new AtomicInteger();
+    /**
+     * Changed objects for not completed transactions (null element means all objects).
+     */
+    private final ConcurrentMap<Transaction, Collection<Key>> transactionChanges = Maps.newConcurrentMap();
+    /**
+     * Incremented on every change; loaded data is not cached if version is changed during loading.
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * Returns bitmask for permissions.
+     *
+     * @return Bitmask or null, if some permission can't be represented in bitmask.
+     */
+    static Long getMask(Collection<Permission> permissions) {
+        long mask = 0;
+        for (Permission permission : permissions) {
+            Integer bit = permissionBits.get(permission);
+            if (bit == null) {
+                synchronized (permissionBits) {
+                    bit = permissionBits.get(permission);
+                    if (bit == null) {
+                        bit = nextPermissionBit.getAndIncrement();
+                        permissionBits.put(permission, bit);
+                    }
+                }
+            }
+            if (bit >= Long.SIZE) {
+                return null;
+            }
+            mask |= 1L << bit;
+        }
+        return mask;
+    }
+
+    /**
+     * Returns current version, which must be obtained before loading data from database and passed to
+     * {@link #put(long, SecuredObjectType, Long, ObjectPermissions)}.
+     */
+    long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Returns cached object permissions.
+     *
+     * @return Object permissions or null, if object is not cached.
+     */
+    ObjectPermissions get(SecuredObjectType type, Long id) {
+        Key key = new Key(type, id);
+        if (isChanging(key)) {
+            statistic.registerCacheGetMiss();
+            return null;
+        }
+        ObjectPermissions result = cache.get(key);
+        if (result == null) {
+            statistic.registerCacheGetMiss();
+        } else {
+            statistic.registerCacheGetHit();
+        }
+        return result;
+    }
+
+    /**
+     * Stores object permissions, loaded from database. Data is not stored, if permissions was changed after version was obtained.
+     */
+    void put(long loadVersion, SecuredObjectType type, Long id, ObjectPermissions permissions) {
+        Key key = new Key(type, id);
+        if (version.get() != loadVersion || isChanging(key)) {
+            return;
+        }
+        if (cache.size() >= SystemProperties.getPermissionCacheSize()) {
+            cache.clear();
+        }
+        cache.put(key, permissions);
+        if (version.get() != loadVersion) {
+            cache.remove(key, permissions);
+        }
+    }
+
+    /**
+     * Must be called, when permissions on objects is changed.
+     *
+     * @param type
+     *            Changed objects type.
+     * @param ids
+     *            Changed objects identities or null, if permissions on unknown objects is changed.
+     */
+    void onChange(SecuredObjectType type, Collection<Long> ids) {
+        Collection<Key> keys = null;
+        if (ids != null) {
+            keys = new ArrayList<Key>(ids.size());
+            for (Long id : ids) {
+                keys.add(new Key(type, id));
+            }
+        }
+        Transaction transaction = getTransaction();
+        if (transaction != null) {
+            Collection<Key> changes = transactionChanges.get(transaction);
+            if (changes == null) {
+                try {
+                    transaction.registerSynchronization(new PermissionsChangeSynchronization(transaction));
+                    changes = new ArrayList<Key>();
+                    transactionChanges.put(transaction, changes);
+                } catch (Exception e) {
+                    log.warn("Unable to register synchronization, permissions cache is cleared immediately", e);
+                }
+            }
+            if (changes != null) {
+                if (keys == null) {
+                    changingAllObjects.incrementAndGet();
+                    changes.add(null);
+                } else {
+                    synchronized (changingObjects) {
+                        for (Key key : keys) {
+                            AtomicInteger count = changingObjects.get(key);
+                            if (count == null) {
+                                changingObjects.put(key, new AtomicInteger(1));
+                            } else {
+                                count.incrementAndGet();
+                            }
+                        }
+                    }
+                    changes.addAll(keys);
+                }
+            }
+        }
+        invalidate(keys);
+    }
+
+    private void invalidate(Collection<Key> keys) {
+        version.incrementAndGet();
+        if (keys == null) {
+            cache.clear();
+        } else {
+            for (Key key : keys) {
+                cache.remove(key);
+            }
+        }
+    }
+
+    private boolean isChanging(Key key) {
+        return changingAllObjects.get() > 0 || !changingObjects.isEmpty() && changingObjects.containsKey(key);
+    }
+
+    private Transaction getTransaction() {
+        try {
+            Transaction transaction = Utils.getTransaction();
+            if (transaction == null || transaction.getStatus() != Status.STATUS_ACTIVE) {
+                return null;
+            }
+            return transaction;
+        } catch (Exception e) {
+            log.debug("Unable to get transaction, permissions cache is cleared immediately", e);
+            return null;
+        }
+    }
+
+    /**
+     * Permissions, issued on secured object.
+     */
+    static class ObjectPermissions {
+        private final Map<Long, Long> executorMasks;
+
+        /**
+         * @param executorMasks
+         *            Map from executor identity to issued permissions bitmask.
+         */
+        ObjectPermissions(Map<Long, Long> executorMasks) {
+            this.executorMasks = executorMasks;
+        }
+
+        /**
+         * Checks, if any of executors has any of permissions.
+         *
+         * @param executorIds
+         *            Executors identities.
+         * @param mask
+         *            Permissions bitmask.
+         */
+        boolean isAllowed(Collection<Long> executorIds, long mask) {
+            if (executorMasks.size() < executorIds.size()) {
+                for (Map.Entry<Long, Long> entry : executorMasks.entrySet()) {
+                    if ((entry.getValue() & mask) != 0 && executorIds.contains(entry.getKey())) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            for (Long executorId : executorIds) {
+                Long executorMask = executorMasks.get(executorId);
+                if (executorMask != null && (executorMask & mask) != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static class Key {
+        private final SecuredObjectType type;
+        private final Long id;
+
+        Key(SecuredObjectType type, Long id) {
+            this.type = type;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return Objects.equal(type, other.type) && Objects.equal(id, other.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(type, id);
+        }
+    }
+
+    /**
+     * Invalidates objects, changed by transaction, and allows caching them after transaction completion.
+     */
+    private class PermissionsChangeSynchronization implements Synchronization {
+        private final Transaction transaction;
+
+        PermissionsChangeSynchronization(Transaction transaction) {
+            this.transaction = transaction;
+        }
+
+        @Override
+        public void beforeCompletion() {
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            Collection<Key> changes = transactionChanges.remove(transaction);
+            if (changes == null) {
+                return;
+            }
+            boolean allObjects = false;
+            synchronized (changingObjects) {
+                for (Key key : changes) {
+                    if (key == null) {
+                        allObjects = true;
+                        changingAllObjects.decrementAndGet();
+                        continue;
+                    }
+                    AtomicInteger count = changingObjects.get(key);
+                    if (count != null && count.decrementAndGet() <= 0) {
+                        changingObjects.remove(key);
+                    }
+                }
+            }
+            if (allObjects) {
+                invalidate(null);
+            } else {
+                changes.removeAll(Collections.singleton(null));
+                invalidate(changes);
+            }
+        }
+    }
+}
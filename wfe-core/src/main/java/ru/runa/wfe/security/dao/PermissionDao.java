@@ -20,6 +20,7 @@ package ru.runa.wfe.security.dao;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.core.Tuple;
 import com.querydsl.jpa.JPQLQuery;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -74,6 +75,7 @@ public class PermissionDao extends CommonDao {
 
     private final Map<SecuredObjectType, Set<Executor>> privelegedExecutors = new HashMap<>();
     private final Set<Long> privelegedExecutorIds = new HashSet<>();
+    private final ObjectPermissionsCache permissionsCache = new ObjectPermissionsCache();
 
     public PermissionDao() {
         for (SecuredObjectType type : SecuredObjectType.values()) {
@@ -142,6 +144,21 @@ public class PermissionDao extends CommonDao {
                             .and(pm.permission.in(toDelete)))
                     .execute();
         }
+        if (!toAdd.isEmpty() || !toDelete.isEmpty()) {
+            onPermissionsChange(object.getSecuredObjectType(), Collections.singletonList(object.getIdentifiableId()));
+        }
+    }
+
+    /**
+     * Must be called after permissions on secured objects is changed past this DAO.
+     *
+     * @param type
+     *            Changed secured objects type.
+     * @param ids
+     *            Changed secured objects identities.
+     */
+    public void onPermissionsChange(SecuredObjectType type, List<Long> ids) {
+        permissionsCache.onChange(type, ids);
     }
 
     /**
@@ -229,6 +246,12 @@ public class PermissionDao extends CommonDao {
         }
 
         PermissionSubstitutions.ForCheck subst = PermissionSubstitutions.getForCheck(type, permission);
+        if (haveIds && SystemProperties.isPermissionCacheEnabled()) {
+            Set<Long> result = filterAllowedIdsCached(executorWithGroups, subst, type, idsOrNull);
+            if (result != null) {
+                return result;
+            }
+        }
         QPermissionMapping pm = QPermissionMapping.permissionMapping;
 
         // Same type for all objects, thus same listType. I believe it would be faster to perform separate query here.
@@ -245,7 +268,7 @@ public class PermissionDao extends CommonDao {
 
         Set<Long> result = new HashSet<>();
         for (List<Long> idsPart : haveIds ? Lists.partition(idsOrNull, SystemProperties.getDatabaseParametersCount()) : nonEmptyListList) {
-            JPQLQuery<Long> q = queryFactory.select(pm.id).from(pm)
+            JPQLQuery<Long> q = queryFactory.select(pm.objectId).from(pm)
                     .where(pm.executor.in(executorWithGroups)
                             .and(pm.objectType.eq(type))
                             .and(pm.permission.in(subst.selfPermissions)));
@@ -333,6 +356,93 @@ public class PermissionDao extends CommonDao {
         return result;
     }
 
+    /**
+     * Checks permissions on all objects at once, using permissions cache.
+     *
+     * @return Identities of allowed objects or null, if permissions can't be checked via cache.
+     */
+    private Set<Long> filterAllowedIdsCached(Set<Executor> executorWithGroups, PermissionSubstitutions.ForCheck subst, SecuredObjectType type,
+            List<Long> ids) {
+        Long listMask = ObjectPermissionsCache.getMask(subst.listPermissions);
+        Long selfMask = ObjectPermissionsCache.getMask(subst.selfPermissions);
+        if (listMask == null || selfMask == null) {
+            return null;
+        }
+        Set<Long> executorIds = new HashSet<>(executorWithGroups.size());
+        for (Executor executor : executorWithGroups) {
+            executorIds.add(executor.getId());
+        }
+        if (!subst.listPermissions.isEmpty()) {
+            Map<Long, ObjectPermissionsCache.ObjectPermissions> listPermissions = getObjectPermissions(type.getListType(),
+                    Collections.singletonList(0L));
+            if (listPermissions == null) {
+                return null;
+            }
+            if (listPermissions.get(0L).isAllowed(executorIds, listMask)) {
+                return new HashSet<>(ids);
+            }
+        }
+        Map<Long, ObjectPermissionsCache.ObjectPermissions> objectsPermissions = getObjectPermissions(type, ids);
+        if (objectsPermissions == null) {
+            return null;
+        }
+        Set<Long> result = new HashSet<>();
+        for (Long id : ids) {
+            if (objectsPermissions.get(id).isAllowed(executorIds, selfMask)) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns permissions, issued on objects. Objects, missed in permissions cache, are loaded from database at once and stored in cache.
+     *
+     * @return Map from object identity to issued permissions or null, if permissions can't be represented in cache.
+     */
+    private Map<Long, ObjectPermissionsCache.ObjectPermissions> getObjectPermissions(SecuredObjectType type, Collection<Long> ids) {
+        Map<Long, ObjectPermissionsCache.ObjectPermissions> result = new HashMap<>(ids.size());
+        List<Long> missedIds = new ArrayList<>();
+        for (Long id : ids) {
+            ObjectPermissionsCache.ObjectPermissions objectPermissions = permissionsCache.get(type, id);
+            if (objectPermissions == null) {
+                missedIds.add(id);
+            } else {
+                result.put(id, objectPermissions);
+            }
+        }
+        if (missedIds.isEmpty()) {
+            return result;
+        }
+        long version = permissionsCache.getVersion();
+        Map<Long, Map<Long, Long>> masks = new HashMap<>(missedIds.size());
+        for (Long id : missedIds) {
+            masks.put(id, new HashMap<Long, Long>());
+        }
+        QPermissionMapping pm = QPermissionMapping.permissionMapping;
+        for (List<Long> idsPart : Lists.partition(missedIds, SystemProperties.getDatabaseParametersCount())) {
+            List<Tuple> rows = queryFactory.select(pm.objectId, pm.executor.id, pm.permission).from(pm)
+                    .where(pm.objectType.eq(type).and(pm.objectId.in(idsPart)))
+                    .fetch();
+            for (Tuple row : rows) {
+                Long mask = ObjectPermissionsCache.getMask(Collections.singleton(row.get(pm.permission)));
+                if (mask == null) {
+                    return null;
+                }
+                Map<Long, Long> objectMasks = masks.get(row.get(pm.objectId));
+                Long executorId = row.get(pm.executor.id);
+                Long executorMask = objectMasks.get(executorId);
+                objectMasks.put(executorId, executorMask == null ? mask : executorMask | mask);
+            }
+        }
+        for (Map.Entry<Long, Map<Long, Long>> entry : masks.entrySet()) {
+            ObjectPermissionsCache.ObjectPermissions objectPermissions = new ObjectPermissionsCache.ObjectPermissions(entry.getValue());
+            permissionsCache.put(version, type, entry.getKey(), objectPermissions);
+            result.put(entry.getKey(), objectPermissions);
+        }
+        return result;
+    }
+
     private Set<Executor> getExecutorWithAllHisGroups(Executor executor) {
         Set<Executor> set = new HashSet<>(executorDao.getExecutorParentsAll(executor, false));
         set.add(executor);
@@ -345,6 +455,7 @@ public class PermissionDao extends CommonDao {
     public void deleteOwnPermissions(Executor executor) {
         QPermissionMapping pm = QPermissionMapping.permissionMapping;
         queryFactory.delete(pm).where(pm.executor.eq(executor)).execute();
+        permissionsCache.onChange(null, null);
     }
 
     /**
@@ -353,6 +464,7 @@ public class PermissionDao extends CommonDao {
     public void deleteAllPermissions(SecuredObject obj) {
         QPermissionMapping pm = QPermissionMapping.permissionMapping;
         queryFactory.delete(pm).where(pm.objectType.eq(obj.getSecuredObjectType()).and(pm.objectId.eq(obj.getIdentifiableId()))).execute();
+        onPermissionsChange(obj.getSecuredObjectType(), Collections.singletonList(obj.getIdentifiableId()));
     }
 
     /**
@@ -497,12 +609,60 @@ public class PermissionDao extends CommonDao {
     }
 
     public boolean permissionExists(final Executor executor, final Permission permission, final SecuredObject object) {
+        return permissionExists(executor, permission, Collections.singletonList(object))[0];
+    }
+
+    /**
+     * Checks whether permission is issued to executor itself (without groups and permission substitutions) on each of secured objects.
+     *
+     * @return Array of: true if permission is issued on secured object with same index; false otherwise.
+     */
+    public boolean[] permissionExists(Executor executor, Permission permission, List<? extends SecuredObject> objects) {
+        boolean[] result = new boolean[objects.size()];
+        Map<SecuredObjectType, List<Long>> typeIds = new HashMap<>();
+        for (SecuredObject object : objects) {
+            List<Long> ids = typeIds.get(object.getSecuredObjectType());
+            if (ids == null) {
+                ids = new ArrayList<>();
+                typeIds.put(object.getSecuredObjectType(), ids);
+            }
+            ids.add(object.getIdentifiableId());
+        }
+        Map<SecuredObjectType, Set<Long>> allowedTypeIds = new HashMap<>();
+        for (Map.Entry<SecuredObjectType, List<Long>> entry : typeIds.entrySet()) {
+            allowedTypeIds.put(entry.getKey(), filterPermissionExists(executor, permission, entry.getKey(), entry.getValue()));
+        }
+        for (int i = 0; i < result.length; i++) {
+            SecuredObject object = objects.get(i);
+            result[i] = allowedTypeIds.get(object.getSecuredObjectType()).contains(object.getIdentifiableId());
+        }
+        return result;
+    }
+
+    private Set<Long> filterPermissionExists(Executor executor, Permission permission, SecuredObjectType type, List<Long> ids) {
+        Set<Long> result = new HashSet<>();
+        if (SystemProperties.isPermissionCacheEnabled()) {
+            Long mask = ObjectPermissionsCache.getMask(Collections.singleton(permission));
+            Map<Long, ObjectPermissionsCache.ObjectPermissions> objectsPermissions = mask == null ? null : getObjectPermissions(type, ids);
+            if (objectsPermissions != null) {
+                Set<Long> executorIds = Collections.singleton(executor.getId());
+                for (Long id : ids) {
+                    if (objectsPermissions.get(id).isAllowed(executorIds, mask)) {
+                        result.add(id);
+                    }
+                }
+                return result;
+            }
+        }
         QPermissionMapping pm = QPermissionMapping.permissionMapping;
-        return queryFactory.select(pm.id).from(pm)
-                .where(pm.executor.eq(executor)
-                        .and(pm.objectType.eq(object.getSecuredObjectType()))
-                        .and(pm.objectId.eq(object.getIdentifiableId()))
-                        .and(pm.permission.eq(permission)))
-                .fetchFirst() != null;
+        for (List<Long> idsPart : Lists.partition(ids, SystemProperties.getDatabaseParametersCount())) {
+            result.addAll(queryFactory.select(pm.objectId).from(pm)
+                    .where(pm.executor.eq(executor)
+                            .and(pm.objectType.eq(type))
+                            .and(pm.objectId.in(idsPart))
+                            .and(pm.permission.eq(permission)))
+                    .fetch());
+        }
+        return result;
     }
 }
@@ -295,6 +295,7 @@ public class AuthorizationLogic extends CommonLogic {
                     }
                     queryFactory.delete(pm).where(pm.executor.eq(executor).and(pm.objectType.eq(type)).and(cond)).execute();
                 }
+                permissionDao.onPermissionsChange(type, objectIds);
             }
         }
     }
@@ -349,6 +350,7 @@ public class AuthorizationLogic extends CommonLogic {
                     q.where(pm.permission.in(permissions));
                 }
                 q.execute();
+                permissionDao.onPermissionsChange(type, objectIds);
             }
         }
     }
@@ -7,12 +7,18 @@ import ru.runa.wfe.commons.SystemProperties;
  */
 final class CacheFactory {
     private static final TaskCache TASK_CACHE;
+    private static final TaskListIndex TASK_LIST_INDEX;
 
     static {
         TASK_CACHE = SystemProperties.useCacheStateMachine() ? new TaskCacheStateCtrl() : new TaskCacheCtrl();
+        TASK_LIST_INDEX = new TaskListIndexCtrl();
     }
 
     public static TaskCache getInstance() {
         return TASK_CACHE;
     }
+
+    public static TaskListIndex getTaskListIndex() {
+        return TASK_LIST_INDEX;
+    }
 }
@@ -0,0 +1,57 @@
+/*
+ * This file is part of the RUNA WFE project.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; version 2.1
+ * of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+package ru.runa.wfe.task.cache;
+
+import java.util.Map;
+import java.util.Set;
+
+import ru.runa.wfe.task.Task;
+import ru.runa.wfe.user.Executor;
+
+/**
+ * Index from executor to identities of {@link Task}'s, assigned to it. Unlike {@link TaskCache}, index is not dropped on task changes: committed
+ * changes are applied to index in place, so actor task list may be computed as union of his executors entries without database access.
+ */
+public interface TaskListIndex {
+
+    /**
+     * Returns index version. Version must be obtained before loading data from database and passed to {@link #putTaskIds(long, Map)}.
+     *
+     * @return Current index version.
+     */
+    public long getVersion();
+
+    /**
+     * Returns identities of tasks, assigned to specified executor.
+     *
+     * @param executorId
+     *            {@link Executor} identity to get tasks for.
+     * @return Identities of assigned tasks or null, if executor tasks is not indexed yet.
+     */
+    public Set<Long> getTaskIds(Long executorId);
+
+    /**
+     * Stores executors tasks, loaded from database. Data for executor is ignored, if executor tasks was changed after version was obtained.
+     *
+     * @param version
+     *            Index version, obtained by {@link #getVersion()} before loading data.
+     * @param executorTaskIds
+     *            Map from {@link Executor} identity to assigned tasks identities. Executors without tasks must be present with empty set.
+     */
+    public void putTaskIds(long version, Map<Long, Set<Long>> executorTaskIds);
+}
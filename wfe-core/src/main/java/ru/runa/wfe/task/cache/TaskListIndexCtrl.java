@@ -0,0 +1,276 @@
+/*
+ * This file is part of the RUNA WFE project.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; version 2.1
+ * of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+package ru.runa.wfe.task.cache;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.transaction.Status;
+import javax.transaction.Transaction;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import ru.runa.wfe.commons.SystemProperties;
+import ru.runa.wfe.commons.cache.Change;
+import ru.runa.wfe.commons.cache.ChangedObjectParameter;
+import ru.runa.wfe.commons.cache.sm.CachingLogic;
+import ru.runa.wfe.commons.cache.sm.ChangeListener;
+import ru.runa.wfe.task.Task;
+import ru.runa.wfe.user.Executor;
+
+/**
+ * {@link TaskListIndex} implementation. Task changes is collected per transaction and applied to index after transaction commit; in case of
+ * rollback changes is discarded. If transaction outcome is unknown, affected executors is removed from index.
+ * <p/>
+ * Index may contain identities of already removed tasks (for example, removed by bulk delete), but never misses committed task assignment. Index
+ * size is limited by {@link SystemProperties#getTaskListIndexSize()}; least recently used executors (including deleted executors and executors
+ * without tasks) are evicted and loaded again on demand.
+ */
+class TaskListIndexCtrl implements TaskListIndex, ChangeListener {
+    private static final Log log = LogFactory.getLog(TaskListIndexCtrl.class);
+    private static final String EXECUTOR_PROPERTY_NAME = "executor";
+
+    /**
+     * Map from executor identity to assigned tasks identities and index version, then executor tasks was changed last time.
+     */
+    private final Cache<Long, ExecutorEntry> executors;
+
+    /**
+     * Maximum change version of evicted executors. Used as change version for executors, missing in index.
+     */
+    private final AtomicLong evictedChangeVersion = new AtomicLong();
+
+    /**
+     * Task changes, made by not completed transactions.
+     */
+    private final ConcurrentMap<Transaction, List<TaskAssignmentChange>> pendingChanges = Maps.newConcurrentMap();
+
+    private final AtomicLong version = new AtomicLong();
+
+    TaskListIndexCtrl() {
+        this(SystemProperties.getTaskListIndexSize());
+    }
+
+    TaskListIndexCtrl(int maxSize) {
+        executors = CacheBuilder.newBuilder().maximumSize(maxSize).removalListener(new RemovalListener<Long, ExecutorEntry>() {
+
+            @Override
+            public void onRemoval(RemovalNotification<Long, ExecutorEntry> notification) {
+                // stale loads for removed executor must be rejected as before removal
+                updateEvictedChangeVersion(notification.getValue().changeVersion);
+            }
+        }).build();
+        CachingLogic.registerChangeListener(this);
+    }
+
+    @Override
+    public long getVersion() {
+        return version.get();
+    }
+
+    @Override
+    public Set<Long> getTaskIds(Long executorId) {
+        ExecutorEntry entry = executors.getIfPresent(executorId);
+        Set<Long> taskIds = entry == null ? null : entry.taskIds;
+        return taskIds == null ? null : Collections.unmodifiableSet(taskIds);
+    }
+
+    @Override
+    public synchronized void putTaskIds(long loadVersion, Map<Long, Set<Long>> executorTaskIds) {
+        for (Map.Entry<Long, Set<Long>> entry : executorTaskIds.entrySet()) {
+            ExecutorEntry executorEntry = executors.getIfPresent(entry.getKey());
+            long changeVersion = executorEntry != null ? executorEntry.changeVersion : evictedChangeVersion.get();
+            if (changeVersion > loadVersion) {
+                continue;
+            }
+            if (executorEntry == null) {
+                executorEntry = new ExecutorEntry(changeVersion);
+                executors.put(entry.getKey(), executorEntry);
+            }
+            Set<Long> taskIds = Sets.newConcurrentHashSet();
+            taskIds.addAll(entry.getValue());
+            executorEntry.taskIds = taskIds;
+        }
+    }
+
+    @Override
+    public void onChange(Transaction transaction, ChangedObjectParameter changedObject) {
+        int idx = changedObject.getPropertyIndex(EXECUTOR_PROPERTY_NAME);
+        Executor executor = changedObject.changeType == Change.DELETE ? null : (Executor) changedObject.currentState[idx];
+        Executor previousExecutor = null;
+        if (changedObject.changeType == Change.DELETE) {
+            previousExecutor = (Executor) changedObject.currentState[idx];
+        } else if (changedObject.previousState != null) {
+            previousExecutor = (Executor) changedObject.previousState[idx];
+        }
+        if (Objects.equal(executor, previousExecutor)) {
+            return;
+        }
+        List<TaskAssignmentChange> changes = pendingChanges.get(transaction);
+        if (changes == null) {
+            changes = Lists.newArrayList();
+            pendingChanges.put(transaction, changes);
+        }
+        changes.add(new TaskAssignmentChange((Task) changedObject.object, previousExecutor, executor));
+    }
+
+    @Override
+    public void beforeTransactionComplete(Transaction transaction) {
+    }
+
+    @Override
+    public void onTransactionCompleted(Transaction transaction) {
+        List<TaskAssignmentChange> changes = pendingChanges.remove(transaction);
+        if (changes == null) {
+            return;
+        }
+        int status = getStatus(transaction);
+        if (status == Status.STATUS_ROLLEDBACK) {
+            return;
+        }
+        synchronized (this) {
+            long changeVersion = version.incrementAndGet();
+            for (TaskAssignmentChange change : changes) {
+                if (status == Status.STATUS_COMMITTED) {
+                    change.apply(changeVersion);
+                } else {
+                    change.invalidate(changeVersion);
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void uninitialize(Object object, Change change) {
+        log.debug("Index is cleared due to " + change + " of " + object);
+        long changeVersion = version.incrementAndGet();
+        executors.invalidateAll();
+        updateEvictedChangeVersion(changeVersion);
+    }
+
+    @Override
+    public List<Class<?>> getListenObjectTypes() {
+        List<Class<?>> result = Lists.newArrayList();
+        result.add(Task.class);
+        return result;
+    }
+
+    private int getStatus(Transaction transaction) {
+        try {
+            return transaction.getStatus();
+        } catch (Exception e) {
+            log.warn("Unable to get transaction status", e);
+            return Status.STATUS_UNKNOWN;
+        }
+    }
+
+    private void updateEvictedChangeVersion(long changeVersion) {
+        while (true) {
+            long current = evictedChangeVersion.get();
+            if (current >= changeVersion || evictedChangeVersion.compareAndSet(current, changeVersion)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Marks executor tasks as changed. Must be called with index monitor held.
+     * 
+     * @return executor entry, created if executor is missing in index.
+     */
+    private ExecutorEntry onExecutorChanged(Executor executor, long changeVersion) {
+        ExecutorEntry entry = executors.getIfPresent(executor.getId());
+        if (entry == null) {
+            entry = new ExecutorEntry(changeVersion);
+            executors.put(executor.getId(), entry);
+        } else {
+            entry.changeVersion = changeVersion;
+        }
+        return entry;
+    }
+
+    /**
+     * Executor tasks in index.
+     */
+    private static class ExecutorEntry {
+        /**
+         * Assigned tasks identities or null, if executor tasks is not loaded.
+         */
+        private volatile Set<Long> taskIds;
+        /**
+         * Index version, then executor tasks was changed last time.
+         */
+        private volatile long changeVersion;
+
+        ExecutorEntry(long changeVersion) {
+            this.changeVersion = changeVersion;
+        }
+    }
+
+    /**
+     * Task executor change, made by transaction.
+     */
+    private class TaskAssignmentChange {
+        private final Task task;
+        private final Executor previousExecutor;
+        private final Executor executor;
+
+        TaskAssignmentChange(Task task, Executor previousExecutor, Executor executor) {
+            this.task = task;
+            this.previousExecutor = previousExecutor;
+            this.executor = executor;
+        }
+
+        void apply(long changeVersion) {
+            if (previousExecutor != null) {
+                Set<Long> taskIds = onExecutorChanged(previousExecutor, changeVersion).taskIds;
+                if (taskIds != null) {
+                    taskIds.remove(task.getId());
+                }
+            }
+            if (executor != null) {
+                Set<Long> taskIds = onExecutorChanged(executor, changeVersion).taskIds;
+                if (taskIds != null) {
+                    taskIds.add(task.getId());
+                }
+            }
+        }
+
+        void invalidate(long changeVersion) {
+            for (Executor affected : new Executor[] { previousExecutor, executor }) {
+                if (affected != null) {
+                    onExecutorChanged(affected, changeVersion).taskIds = null;
+                }
+            }
+        }
+    }
+}
@@ -21,10 +21,17 @@
  */
 package ru.runa.wfe.task.dao;
 
+import com.google.common.collect.Lists;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import org.springframework.stereotype.Component;
+import ru.runa.wfe.commons.SystemProperties;
 import ru.runa.wfe.commons.dao.GenericDao;
 import ru.runa.wfe.execution.ExecutionStatus;
 import ru.runa.wfe.execution.Process;
@@ -102,6 +109,26 @@ public class TaskDao extends GenericDao<Task> {
                 .list();
     }
 
+    /**
+     * @return map from executor id to assigned tasks ids; executors without tasks are mapped to empty set.
+     */
+    public Map<Long, Set<Long>> getTaskIdsByExecutors(Collection<Long> executorIds) {
+        Map<Long, Set<Long>> result = new HashMap<>();
+        for (Long executorId : executorIds) {
+            result.put(executorId, new HashSet<Long>());
+        }
+        for (List<Long> partition : Lists.partition(new ArrayList<>(executorIds), SystemProperties.getDatabaseParametersCount())) {
+            List<Object[]> rows = sessionFactory.getCurrentSession()
+                    .createQuery("select executor.id, id from Task where executor.id in (:executorIds)")
+                    .setParameterList("executorIds", partition)
+                    .list();
+            for (Object[] row : rows) {
+                result.get(row[0]).add((Long) row[1]);
+            }
+        }
+        return result;
+    }
+
     /**
      * @return return all expired tasks
      */
@@ -3,6 +3,8 @@ package ru.runa.wfe.task.logic;
 import java.util.List;
 
 import ru.runa.wfe.presentation.BatchPresentation;
+import ru.runa.wfe.presentation.KeysetCursor;
+import ru.runa.wfe.presentation.KeysetPage;
 import ru.runa.wfe.task.dto.WfTask;
 import ru.runa.wfe.user.Actor;
 
@@ -10,4 +12,18 @@ public interface TaskListBuilder {
 
     public List<WfTask> getTasks(Actor actor, BatchPresentation batchPresentation);
 
+    /**
+     * Loads page of actor tasks, sorted and filtered by {@link BatchPresentation}. Page size is taken from {@link BatchPresentation}, page number is
+     * ignored: page starts after cursor position.
+     * 
+     * @param actor
+     *            Actor, which task list is created.
+     * @param batchPresentation
+     *            {@link BatchPresentation} with sorting, filtering and page size.
+     * @param after
+     *            Cursor, returned with previous page, or null to load first page.
+     * @return Page of tasks with cursor to load next page.
+     */
+    public KeysetPage<WfTask> getTasks(Actor actor, BatchPresentation batchPresentation, KeysetCursor after);
+
 }
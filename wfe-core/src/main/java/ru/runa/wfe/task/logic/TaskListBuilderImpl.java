@@ -5,6 +5,7 @@ import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Splitter;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -16,6 +17,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataAccessException;
+import ru.runa.wfe.InternalApplicationException;
 import ru.runa.wfe.audit.ProcessLog;
 import ru.runa.wfe.audit.TaskEscalationLog;
 import ru.runa.wfe.audit.dao.ProcessLogDao;
@@ -30,14 +32,19 @@ import ru.runa.wfe.execution.ExecutionContextFactory;
 import ru.runa.wfe.execution.ExecutionStatus;
 import ru.runa.wfe.execution.Process;
 import ru.runa.wfe.execution.dao.NodeProcessDao;
+import ru.runa.wfe.execution.dao.SwimlaneDao;
 import ru.runa.wfe.execution.dao.ProcessDao;
 import ru.runa.wfe.lang.ProcessDefinition;
 import ru.runa.wfe.presentation.BatchPresentation;
+import ru.runa.wfe.presentation.BatchPresentationConsts;
 import ru.runa.wfe.presentation.ClassPresentationType;
 import ru.runa.wfe.presentation.FieldDescriptor;
+import ru.runa.wfe.presentation.KeysetCursor;
+import ru.runa.wfe.presentation.KeysetPage;
 import ru.runa.wfe.presentation.filter.FilterCriteria;
 import ru.runa.wfe.presentation.hibernate.CompilerParameters;
 import ru.runa.wfe.presentation.hibernate.BatchPresentationCompilerFactory;
+import ru.runa.wfe.presentation.hibernate.HibernateCompilerHqlBuider;
 import ru.runa.wfe.presentation.hibernate.RestrictionsToOwners;
 import ru.runa.wfe.security.Permission;
 import ru.runa.wfe.security.dao.PermissionDao;
@@ -48,6 +55,7 @@ import ru.runa.wfe.ss.logic.SubstitutionLogic;
 import ru.runa.wfe.task.Task;
 import ru.runa.wfe.task.TaskObservableClassPresentation;
 import ru.runa.wfe.task.cache.TaskCache;
+import ru.runa.wfe.task.cache.TaskListIndex;
 import ru.runa.wfe.task.dao.TaskDao;
 import ru.runa.wfe.task.dto.WfTask;
 import ru.runa.wfe.task.dto.WfTaskFactory;
@@ -59,7 +67,6 @@ import ru.runa.wfe.user.Group;
 import ru.runa.wfe.user.TemporaryGroup;
 import ru.runa.wfe.user.dao.ExecutorDao;
 import ru.runa.wfe.user.logic.ExecutorLogic;
-import ru.runa.wfe.var.Variable;
 import ru.runa.wfe.var.dao.VariableDao;
 
 /**
@@ -98,9 +105,13 @@ public class TaskListBuilderImpl implements TaskListBuilder, ObservableTaskListB
     @Autowired
     private VariableDao variableDao;
     @Autowired
+    private SwimlaneDao swimlaneDao;
+    @Autowired
     private PermissionDao permissionDao;
     @Autowired
     private ExecutorLogic executorLogic;
+    @Autowired
+    private TaskListIndex taskListIndex;
 
     public TaskListBuilderImpl(TaskCache taskCache) {
         this.taskCache = taskCache;
@@ -117,26 +128,103 @@ public class TaskListBuilderImpl implements TaskListBuilder, ObservableTaskListB
 
         List<TaskInListState> tasksState = loadMyAndGroupsAndSubstitutedTasks(actor, batchPresentation);
         tasksState.addAll(loadAdministrativeTasks(actor));
+        List<WfTask> result = createWfTasks(actor, batchPresentation, tasksState);
+        taskCache.setTasks(cached, actor.getId(), batchPresentation, result);
+        return result;
+    }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public KeysetPage<WfTask> getTasks(Actor actor, BatchPresentation batchPresentation, KeysetCursor after) {
+        Preconditions.checkNotNull(batchPresentation, "batchPresentation");
+        int rangeSize = batchPresentation.getRangeSize();
+        Set<Executor> executorsToGetTasksByMembership = getExecutorsToGetTasks(actor, false);
+        Set<Executor> executorsToGetTasks = Sets.newHashSet(executorsToGetTasksByMembership);
+        getSubstituteExecutorsToGetTasks(actor, executorsToGetTasks);
+        executorsToGetTasks = getExecutorsWithTasks(executorsToGetTasks);
+        if (rangeSize == BatchPresentationConsts.RANGE_SIZE_UNLIMITED || !HibernateCompilerHqlBuider.isKeysetPagingSupported(batchPresentation)
+                || executorsToGetTasks.size() > SystemProperties.getDatabaseParametersCount() || findProcessAdminGroup(actor) != null) {
+            log.debug("getTasks: keyset paging is not applicable for " + actor + ", loading full task list");
+            return getPage(getTasks(actor, batchPresentation), rangeSize, after);
+        }
+        if (after != null && after.isOffset()) {
+            throw new InternalApplicationException("Cursor " + after + " does not belong to keyset paged task list");
+        }
+        List<TaskInListState> tasksState = Lists.newArrayList();
+        KeysetCursor position = after;
+        KeysetCursor cursor = null;
+        BatchPresentation chunkPresentation = batchPresentation.clone();
+        RestrictionsToOwners owners = new RestrictionsToOwners(Lists.newArrayList(executorsToGetTasks), "executor");
+        while (!executorsToGetTasks.isEmpty()) {
+            // tasks may be rejected by substitution rules, so page is filled by several queries if required
+            chunkPresentation.setRangeSize(rangeSize - tasksState.size());
+            CompilerParameters parameters = CompilerParameters.createNonPaged().addOwners(owners).loadKeysetPage(position);
+            KeysetPage<Task> tasks = (KeysetPage<Task>) batchPresentationCompilerFactory.createCompiler(chunkPresentation).getKeysetPage(parameters);
+            for (Task task : tasks.getRows()) {
+                addAcceptableTask(tasksState, task, actor, batchPresentation, executorsToGetTasksByMembership);
+            }
+            cursor = tasks.getNextCursor();
+            if (cursor == null || tasksState.size() == rangeSize) {
+                break;
+            }
+            position = cursor;
+        }
+        if (tasksState.isEmpty()) {
+            cursor = null;
+        }
+        return new KeysetPage<>(createWfTasks(actor, batchPresentation, tasksState), cursor);
+    }
+
+    /**
+     * Creates page of tasks from full ordered task list. Used then keyset paging can't be used to load tasks.
+     * 
+     * @param tasks
+     *            Full ordered task list.
+     * @param rangeSize
+     *            Page size.
+     * @param after
+     *            Position, after which page starts. Page starts after task with {@link KeysetCursor#getLastId()} or, if task is not in list
+     *            anymore, after {@link KeysetCursor#getOffset()}. Cursors with sort values are rejected.
+     * @return Page of tasks.
+     */
+    private KeysetPage<WfTask> getPage(List<WfTask> tasks, int rangeSize, KeysetCursor after) {
+        int from = 0;
+        if (after != null) {
+            if (!after.isOffset()) {
+                throw new InternalApplicationException("Cursor " + after + " does not belong to fully loaded task list");
+            }
+            from = after.getOffset();
+            for (int i = 0; i < tasks.size(); i++) {
+                if (tasks.get(i).getId().equals(after.getLastId())) {
+                    from = i + 1;
+                    break;
+                }
+            }
+        }
+        from = Math.min(from, tasks.size());
+        int to = rangeSize == BatchPresentationConsts.RANGE_SIZE_UNLIMITED ? tasks.size() : Math.min(tasks.size(), from + rangeSize);
+        List<WfTask> page = Lists.newArrayList(tasks.subList(from, to));
+        KeysetCursor nextCursor = to < tasks.size() ? new KeysetCursor(tasks.get(to - 1).getId(), to) : null;
+        return new KeysetPage<>(page, nextCursor);
+    }
+
+    private List<WfTask> createWfTasks(Actor actor, BatchPresentation batchPresentation, List<TaskInListState> tasksState) {
         List<String> variableNames = batchPresentation.getDynamicFieldsToDisplay(true);
-        Map<Process, Map<String, Variable<?>>> variables = variableDao.getVariables(getTasksProcesses(tasksState), variableNames);
+        TaskListVariableLoader variableLoader = createVariableLoader(tasksState, variableNames);
         HashSet<Long> openedTasks = new HashSet<>(taskDao.getOpenedTasks(actor.getId(), getTasksIds(tasksState)));
 
         List<WfTask> result = new ArrayList<>();
         for (TaskInListState state : tasksState) {
             WfTask wfTask = wfTaskFactory.create(state.getTask(), state.getActor(), state.isAcquiredBySubstitution(), null,
                     !openedTasks.contains(state.getTask().getId()));
-            if (!Utils.isNullOrEmpty(variableNames)) {
+            if (variableLoader != null) {
                 Process process = state.getTask().getProcess();
-                ProcessDefinition processDefinition = processDefinitionLoader.getDefinition(process.getDeployment().getId());
-                ExecutionContext executionContext = new ExecutionContext(processDefinition, process, variables, false);
                 for (String variableName : variableNames) {
-                    wfTask.addVariable(executionContext.getVariableProvider().getVariable(variableName));
+                    wfTask.addVariable(variableLoader.getVariable(process, variableName));
                 }
             }
             result.add(wfTask);
         }
-        taskCache.setTasks(cached, actor.getId(), batchPresentation, result);
         return result;
     }
 
@@ -146,32 +234,31 @@ public class TaskListBuilderImpl implements TaskListBuilder, ObservableTaskListB
         Preconditions.checkArgument(batchPresentation.getType() == ClassPresentationType.TASK_OBSERVABLE);
         List<TaskInListState> tasksState = loadObservableTasks(actor, batchPresentation);
         List<String> variableNames = batchPresentation.getDynamicFieldsToDisplay(true);
-        Map<Process, Map<String, Variable<?>>> variables = variableDao.getVariables(getTasksProcesses(tasksState), variableNames);
+        TaskListVariableLoader variableLoader = createVariableLoader(tasksState, variableNames);
         HashSet<Long> openedTasks = new HashSet<>();
         for (List<Long> partitionedTasksIds : Lists.partition(getTasksIds(tasksState), SystemProperties.getDatabaseParametersCount())) {
             openedTasks.addAll(taskDao.getOpenedTasks(actor.getId(), partitionedTasksIds));
         }
         List<WfTask> result = new ArrayList<>();
         boolean administrator = executorDao.isAdministrator(actor);
+        Set<Executor> listedExecutors = administrator ? null : getListedTaskExecutors(actor, tasksState);
         for (TaskInListState state : tasksState) {
             WfTask wfTask = wfTaskFactory.create(state.getTask(), state.getActor(), state.isAcquiredBySubstitution(), null,
                     !openedTasks.contains(state.getTask().getId()));
-            if (!Utils.isNullOrEmpty(variableNames)) {
+            if (variableLoader != null) {
                 Process process = state.getTask().getProcess();
-                ProcessDefinition processDefinition = processDefinitionLoader.getDefinition(process.getDeployment().getId());
-                ExecutionContext executionContext = new ExecutionContext(processDefinition, process, variables, false);
                 for (String variableName : variableNames) {
-                    wfTask.addVariable(executionContext.getVariableProvider().getVariable(variableName));
+                    wfTask.addVariable(variableLoader.getVariable(process, variableName));
                 }
             }
             if (!administrator) {
                 Executor executor = state.getTask().getExecutor();
                 if (executor instanceof Actor) {
-                    if (!permissionDao.permissionExists(actor, Permission.LIST, executor)) {
+                    if (!listedExecutors.contains(executor)) {
                         wfTask.setOwner(Actor.UNAUTHORIZED_ACTOR);
                     }
                 } else {
-                    if (!(executor instanceof TemporaryGroup) && !permissionDao.permissionExists(actor, Permission.LIST, executor)) {
+                    if (!(executor instanceof TemporaryGroup) && !listedExecutors.contains(executor)) {
                         wfTask.setOwner(Group.UNAUTHORIZED_GROUP);
                     }
                 }
@@ -181,6 +268,28 @@ public class TaskListBuilderImpl implements TaskListBuilder, ObservableTaskListB
         return result;
     }
 
+    /**
+     * Returns task executors, actor has {@link Permission#LIST} permission on. Permissions are checked for all executors at once.
+     */
+    private Set<Executor> getListedTaskExecutors(Actor actor, List<TaskInListState> tasksState) {
+        Set<Executor> taskExecutors = new HashSet<>();
+        for (TaskInListState state : tasksState) {
+            Executor executor = state.getTask().getExecutor();
+            if (executor != null && !(executor instanceof TemporaryGroup)) {
+                taskExecutors.add(executor);
+            }
+        }
+        List<Executor> executors = new ArrayList<>(taskExecutors);
+        boolean[] allowed = permissionDao.permissionExists(actor, Permission.LIST, executors);
+        Set<Executor> result = new HashSet<>();
+        for (int i = 0; i < allowed.length; i++) {
+            if (allowed[i]) {
+                result.add(executors.get(i));
+            }
+        }
+        return result;
+    }
+
     public Set<Executor> getObservableExecutors(Actor actor, String observableExecutorNameTemplate) {
         if (Utils.isNullOrEmpty(observableExecutorNameTemplate)) {
             observableExecutorNameTemplate = "%";
@@ -221,6 +330,13 @@ public class TaskListBuilderImpl implements TaskListBuilder, ObservableTaskListB
         return executorsToGetTasks;
     }
 
+    private TaskListVariableLoader createVariableLoader(List<TaskInListState> tasksState, List<String> variableNames) {
+        if (Utils.isNullOrEmpty(variableNames) || tasksState.isEmpty()) {
+            return null;
+        }
+        return new TaskListVariableLoader(processDefinitionLoader, swimlaneDao, variableDao, getTasksProcesses(tasksState), variableNames);
+    }
+
     /**
      * Get processes, which tasks is in user tasks list.
      * 
@@ -262,18 +378,32 @@ public class TaskListBuilderImpl implements TaskListBuilder, ObservableTaskListB
      */
     private List<TaskInListState> loadAdministrativeTasks(Actor actor) {
         List<TaskInListState> tasksState = Lists.newArrayList();
+        Group group = findProcessAdminGroup(actor);
+        if (group != null) {
+            includeAdministrativeTasks(tasksState, group, actor);
+        }
+        return tasksState;
+    }
+
+    /**
+     * Finds process administrators group, which contains actor.
+     * 
+     * @param actor
+     *            Actor, which task list is created.
+     * @return Process administrators group or null, if actor is not in process administrators group.
+     */
+    private Group findProcessAdminGroup(Actor actor) {
         for (String groupName : SystemProperties.getProcessAdminGroupNames()) {
             try {
                 Group group = executorDao.getGroup(groupName);
                 if (executorDao.getGroupActors(group).contains(actor)) {
-                    includeAdministrativeTasks(tasksState, group, actor);
-                    break;
+                    return group;
                 }
             } catch (ExecutorDoesNotExistException e) {
                 log.warn(e);
             }
         }
-        return tasksState;
+        return null;
     }
 
     /**
@@ -289,24 +419,28 @@ public class TaskListBuilderImpl implements TaskListBuilder, ObservableTaskListB
         Set<Executor> executorsToGetTasksByMembership = getExecutorsToGetTasks(actor, false);
         Set<Executor> executorsToGetTasks = Sets.newHashSet(executorsToGetTasksByMembership);
         getSubstituteExecutorsToGetTasks(actor, executorsToGetTasks);
-        List<Task> tasks = loadTasks(batchPresentation, executorsToGetTasks);
+        List<Task> tasks = loadTasks(batchPresentation, getExecutorsWithTasks(executorsToGetTasks));
         List<TaskInListState> tasksState = Lists.newArrayList();
         for (Task task : tasks) {
-            try {
-                TaskInListState acceptable = getAcceptableTask(task, actor, batchPresentation, executorsToGetTasksByMembership);
-                if (acceptable == null) {
-                    continue;
-                }
+            addAcceptableTask(tasksState, task, actor, batchPresentation, executorsToGetTasksByMembership);
+        }
+        return tasksState;
+    }
+
+    private void addAcceptableTask(List<TaskInListState> tasksState, Task task, Actor actor, BatchPresentation batchPresentation,
+            Set<Executor> executorsToGetTasksByMembership) {
+        try {
+            TaskInListState acceptable = getAcceptableTask(task, actor, batchPresentation, executorsToGetTasksByMembership);
+            if (acceptable != null) {
                 tasksState.add(acceptable);
-            } catch (Exception e) {
-                if (taskDao.get(task.getId()) == null) {
-                    log.debug(String.format("getTasks: task: %s has been completed", task), e);
-                    continue;
-                }
-                log.error(String.format("getTasks: task: %s unable to build ", task), e);
             }
+        } catch (Exception e) {
+            if (taskDao.get(task.getId()) == null) {
+                log.debug(String.format("getTasks: task: %s has been completed", task), e);
+                return;
+            }
+            log.error(String.format("getTasks: task: %s unable to build ", task), e);
         }
-        return tasksState;
     }
 
     private void addObservableExecutor(Executor executor, Set<Executor> executors) {
@@ -329,7 +463,7 @@ public class TaskListBuilderImpl implements TaskListBuilder, ObservableTaskListB
      */
     private List<TaskInListState> loadObservableTasks(Actor actor, BatchPresentation batchPresentation) {
         String observableExecutorNameTemplate = getObservableExecutorNameTemplate(batchPresentation);
-        Set<Executor> executorsToGetTasks = getObservableExecutors(actor, observableExecutorNameTemplate);
+        Set<Executor> executorsToGetTasks = getExecutorsWithTasks(getObservableExecutors(actor, observableExecutorNameTemplate));
         List<TaskInListState> tasksState = Lists.newArrayList();
         if (!executorsToGetTasks.isEmpty()) {
             List<Task> tasks = loadTasks(batchPresentation, executorsToGetTasks);
@@ -350,9 +484,44 @@ public class TaskListBuilderImpl implements TaskListBuilder, ObservableTaskListB
         return "";
     }
 
+    /**
+     * Filters out executors without assigned tasks using {@link TaskListIndex}. Tasks for executors, missing in index, is loaded into index.
+     * 
+     * @param executors
+     *            Executors to load tasks for.
+     * @return Executors, which may have assigned tasks. Always not null.
+     */
+    private Set<Executor> getExecutorsWithTasks(Set<Executor> executors) {
+        long indexVersion = taskListIndex.getVersion();
+        Set<Executor> result = Sets.newHashSet();
+        Map<Long, Executor> notIndexed = Maps.newHashMap();
+        for (Executor executor : executors) {
+            Set<Long> taskIds = taskListIndex.getTaskIds(executor.getId());
+            if (taskIds == null) {
+                notIndexed.put(executor.getId(), executor);
+            } else if (!taskIds.isEmpty()) {
+                result.add(executor);
+            }
+        }
+        if (!notIndexed.isEmpty()) {
+            Map<Long, Set<Long>> executorTaskIds = taskDao.getTaskIdsByExecutors(notIndexed.keySet());
+            taskListIndex.putTaskIds(indexVersion, executorTaskIds);
+            for (Map.Entry<Long, Set<Long>> entry : executorTaskIds.entrySet()) {
+                if (!entry.getValue().isEmpty()) {
+                    result.add(notIndexed.get(entry.getKey()));
+                }
+            }
+        }
+        log.debug(String.format("getExecutorsWithTasks: %s of %s executors have tasks", result.size(), executors.size()));
+        return result;
+    }
+
     @SuppressWarnings("unchecked")
     private List<Task> loadTasks(BatchPresentation batchPresentation, Set<Executor> executorsToGetTasks) {
         List<Task> tasks = Lists.newArrayList();
+        if (executorsToGetTasks.isEmpty()) {
+            return tasks;
+        }
         for (List<Executor> list : Lists.partition(Lists.newArrayList(executorsToGetTasks), SystemProperties.getDatabaseParametersCount())) {
             CompilerParameters parameters = CompilerParameters.createNonPaged().addOwners(new RestrictionsToOwners(list, "executor"));
             tasks.addAll((List<Task>) batchPresentationCompilerFactory.createCompiler(batchPresentation).getBatch(parameters));
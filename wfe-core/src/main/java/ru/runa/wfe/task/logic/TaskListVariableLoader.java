@@ -0,0 +1,61 @@
+package ru.runa.wfe.task.logic;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ru.runa.wfe.commons.SystemProperties;
+import ru.runa.wfe.definition.dao.ProcessDefinitionLoader;
+import ru.runa.wfe.execution.ExecutionContext;
+import ru.runa.wfe.execution.Process;
+import ru.runa.wfe.execution.Swimlane;
+import ru.runa.wfe.execution.dao.SwimlaneDao;
+import ru.runa.wfe.lang.ProcessDefinition;
+import ru.runa.wfe.lang.SwimlaneDefinition;
+import ru.runa.wfe.var.Variable;
+import ru.runa.wfe.var.dao.BaseProcessVariableLoader;
+import ru.runa.wfe.var.dao.VariableDao;
+import ru.runa.wfe.var.dao.VariableLoaderDaoFallback;
+import ru.runa.wfe.var.dto.WfVariable;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Loads variables, displayed in task list rows. Variables for all listed processes are loaded with single (partitioned) query, and variable loading
+ * components are shared by all tasks of process, so no {@link ExecutionContext} is created for every task.
+ */
+class TaskListVariableLoader {
+    private final ProcessDefinitionLoader processDefinitionLoader;
+    private final SwimlaneDao swimlaneDao;
+    private final VariableLoaderDaoFallback variableLoader;
+    private final Map<Process, BaseProcessVariableLoader> processVariableLoaders = Maps.newHashMap();
+
+    TaskListVariableLoader(ProcessDefinitionLoader processDefinitionLoader, SwimlaneDao swimlaneDao, VariableDao variableDao,
+            Set<Process> processes, List<String> variableNames) {
+        this.processDefinitionLoader = processDefinitionLoader;
+        this.swimlaneDao = swimlaneDao;
+        Map<Process, Map<String, Variable<?>>> variables = variableDao.getVariables(processes, variableNames);
+        this.variableLoader = new VariableLoaderDaoFallback(variableDao, variables);
+    }
+
+    /**
+     * Returns variable or swimlane value with the given name, same as {@link ExecutionContext#getVariable(String, boolean)} with swimlanes search.
+     */
+    WfVariable getVariable(Process process, String name) {
+        ProcessDefinition processDefinition = processDefinitionLoader.getDefinition(process.getDeployment().getId());
+        SwimlaneDefinition swimlaneDefinition = processDefinition.getSwimlane(name);
+        if (swimlaneDefinition != null) {
+            Swimlane swimlane = swimlaneDao.findByProcessAndName(process, swimlaneDefinition.getName());
+            if (swimlane == null && SystemProperties.isSwimlaneAutoInitializationEnabled()) {
+                return new ExecutionContext(processDefinition, process).getVariable(name, true);
+            }
+            return new WfVariable(swimlaneDefinition.toVariableDefinition(), swimlane != null ? swimlane.getExecutor() : null);
+        }
+        BaseProcessVariableLoader processVariableLoader = processVariableLoaders.get(process);
+        if (processVariableLoader == null) {
+            processVariableLoader = new BaseProcessVariableLoader(variableLoader, processDefinition, process);
+            processVariableLoaders.put(process, processVariableLoader);
+        }
+        return processVariableLoader.get(name);
+    }
+}
@@ -34,6 +34,8 @@ import ru.runa.wfe.lang.Synchronizable;
 import ru.runa.wfe.lang.Transition;
 import ru.runa.wfe.presentation.BatchPresentation;
 import ru.runa.wfe.presentation.ClassPresentationType;
+import ru.runa.wfe.presentation.KeysetCursor;
+import ru.runa.wfe.presentation.KeysetPage;
 import ru.runa.wfe.presentation.hibernate.CompilerParameters;
 import ru.runa.wfe.presentation.hibernate.PresentationCompiler;
 import ru.runa.wfe.security.ApplicablePermissions;
@@ -207,6 +209,10 @@ public class TaskLogic extends WfCommonLogic {
         return taskListBuilder.getTasks(user.getActor(), batchPresentation);
     }
 
+    public KeysetPage<WfTask> getMyTasks(User user, BatchPresentation batchPresentation, KeysetCursor after) {
+        return taskListBuilder.getTasks(user.getActor(), batchPresentation, after);
+    }
+
     public List<WfTask> getTasks(User user, BatchPresentation batchPresentation) {
         if (batchPresentation.getType() == ClassPresentationType.TASK_OBSERVABLE) {
             return observableTaskListBuilder.getObservableTasks(user.getActor(), batchPresentation);
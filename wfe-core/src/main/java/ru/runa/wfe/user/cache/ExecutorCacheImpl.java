@@ -56,8 +56,6 @@ class ExecutorCacheImpl extends BaseCacheImpl implements ManageableExecutorCache
     public static final String executorsByNameName = "ru.runa.wfe.user.cache.executorsByName";
     public static final String groupMembersName = "ru.runa.wfe.user.cache.groupMembers";
     public static final String executorParentsName = "ru.runa.wfe.user.cache.executorParents";
-    public static final String allGroupActorsName = "ru.runa.wfe.user.cache.allGroupActors";
-    public static final String allExecutorGroupsName = "ru.runa.wfe.user.cache.allExecutorGroups";
     public static final String allExecutorsListsName = "ru.runa.wfe.user.cache.allExecutorsLists";
 
     /* Caches implementation. */
@@ -66,9 +64,11 @@ class ExecutorCacheImpl extends BaseCacheImpl implements ManageableExecutorCache
     private final Cache<String, Executor> nameToExecutorCache;
     private final Cache<Long, HashSet<Executor>> groupToMembersCache;
     private final Cache<Long, HashSet<Group>> executorToParentGroupsCache;
-    private final Cache<Long, HashSet<Actor>> groupToAllActorMembersCache;
-    private final Cache<Long, HashSet<Group>> executorToAllParentGroupsCache;
     private final Cache<Class<?>, ConcurrentHashMap<BatchPresentationFieldEquals, List<Executor>>> batchAllExecutors;
+    /**
+     * Membership graph for recursive group members and parents; null, if cache initialization is interrupted.
+     */
+    private ExecutorMembershipGraph membershipGraph;
 
     public ExecutorCacheImpl() {
         this(new CacheInitializationProcessContextStub());
@@ -80,8 +80,6 @@ class ExecutorCacheImpl extends BaseCacheImpl implements ManageableExecutorCache
         nameToExecutorCache = createCache(executorsByNameName);
         groupToMembersCache = createCache(groupMembersName);
         executorToParentGroupsCache = createCache(executorParentsName);
-        groupToAllActorMembersCache = createCache(allGroupActorsName);
-        executorToAllParentGroupsCache = createCache(allExecutorGroupsName);
         batchAllExecutors = createCache(allExecutorsListsName);
         List<Executor> allExecutors = getAllExecutors();
         if (!context.isInitializationStillRequired()) {
@@ -122,7 +120,7 @@ class ExecutorCacheImpl extends BaseCacheImpl implements ManageableExecutorCache
 
     @Override
     public Set<Actor> getGroupActorsAll(Group group) {
-        return (Set<Actor>) SerializationUtils.clone(groupToAllActorMembersCache.get(group.getId()));
+        return (Set<Actor>) SerializationUtils.clone(getExecutors(membershipGraph == null ? null : membershipGraph.getAllActorIds(group.getId())));
     }
 
     @Override
@@ -132,22 +130,37 @@ class ExecutorCacheImpl extends BaseCacheImpl implements ManageableExecutorCache
 
     @Override
     public Set<Group> getExecutorParentsAll(Executor executor) {
-        return (Set<Group>) SerializationUtils.clone(executorToAllParentGroupsCache.get(executor.getId()));
+        return (Set<Group>) SerializationUtils.clone(getExecutors(membershipGraph == null ? null : membershipGraph.getAllParentIds(executor.getId())));
+    }
+
+    /**
+     * Returns cached executors with given identities.
+     *
+     * @return Executors or null, if identities is null or some executor is not cached.
+     */
+    private <T extends Executor> HashSet<T> getExecutors(long[] ids) {
+        if (ids == null) {
+            return null;
+        }
+        HashSet<T> result = new HashSet<T>(ids.length * 4 / 3 + 1);
+        for (long id : ids) {
+            Executor executor = idToExecutorCache.get(id);
+            if (executor == null) {
+                return null;
+            }
+            result.add((T) executor);
+        }
+        return result;
     }
 
     @Override
     public <T extends Executor> VersionedCacheData<List<T>> getAllExecutor(Class<T> clazz, BatchPresentation batch) {
-        synchronized (this) {
-            ConcurrentHashMap<BatchPresentationFieldEquals, List<Executor>> map = batchAllExecutors.get(clazz);
-            if (map == null) {
-                return getVersionnedData(null);
-            }
-            List<Executor> cachedExecutors = map.get(new BatchPresentationFieldEquals(batch));
-            if (cachedExecutors == null) {
-                return getVersionnedData(null);
-            }
-            return getVersionnedData((List<T>) Collections.unmodifiableList(cachedExecutors));
+        ConcurrentHashMap<BatchPresentationFieldEquals, List<Executor>> map = batchAllExecutors.get(clazz);
+        if (map == null) {
+            return getVersionnedData(null);
         }
+        List<Executor> cachedExecutors = map.get(new BatchPresentationFieldEquals(batch, false));
+        return getVersionnedData((List<T>) cachedExecutors);
     }
 
     @Override
@@ -156,17 +169,32 @@ class ExecutorCacheImpl extends BaseCacheImpl implements ManageableExecutorCache
         if (!mayUpdateVersionnedData(oldCachedData)) {
             return;
         }
-        synchronized (this) {
-            ConcurrentHashMap<BatchPresentationFieldEquals, List<Executor>> map = batchAllExecutors.get(clazz);
+        ConcurrentHashMap<BatchPresentationFieldEquals, List<Executor>> map = getBatchAllExecutorsMap(clazz);
+        BatchPresentationFieldEquals key = new BatchPresentationFieldEquals(batch, true);
+        List<Executor> result = Collections.unmodifiableList(new ArrayList<Executor>(executors));
+        map.put(key, result);
+        if (!mayUpdateVersionnedData(oldCachedData)) {
+            // cache was changed during update: cached list may be stale.
+            map.remove(key, result);
+        }
+    }
+
+    /**
+     * Returns executor lists map for executor class, creating it if required. Lock is acquired only on map creation, so readers and writers of
+     * executor lists is not blocked by each other.
+     */
+    private ConcurrentHashMap<BatchPresentationFieldEquals, List<Executor>> getBatchAllExecutorsMap(Class<?> clazz) {
+        ConcurrentHashMap<BatchPresentationFieldEquals, List<Executor>> map = batchAllExecutors.get(clazz);
+        if (map != null) {
+            return map;
+        }
+        synchronized (batchAllExecutors) {
+            map = batchAllExecutors.get(clazz);
             if (map == null) {
                 map = new ConcurrentHashMap<BatchPresentationFieldEquals, List<Executor>>();
+                batchAllExecutors.put(clazz, map);
             }
-            List<Executor> result = new ArrayList<Executor>();
-            for (Executor executor : executors) {
-                result.add(executor);
-            }
-            map.put(new BatchPresentationFieldEquals(batch), result);
-            batchAllExecutors.put(clazz, map);
+            return map;
         }
     }
 
@@ -181,19 +209,13 @@ class ExecutorCacheImpl extends BaseCacheImpl implements ManageableExecutorCache
             codeToActorCache.remove(((Actor) executor).getCode());
         }
         batchAllExecutors.clear();
-        Set<Group> upperGroups = executorToAllParentGroupsCache.get(executor.getId());
-        if (upperGroups != null) {
-            for (Group upperGroup : upperGroups) {
-                groupToMembersCache.remove(upperGroup.getId());
-                groupToAllActorMembersCache.remove(upperGroup.getId());
-            }
-        }
+        clearUpperGroupsCaches(executor.getId());
         return clearGroupMembersCaches(executor);
     }
 
     private boolean clearGroupMembersCaches(Executor executor) {
         boolean result = true;
-        result = result && executorToAllParentGroupsCache.remove(executor.getId());
+        result = result && membershipGraph != null && membershipGraph.invalidateAllParents(executor.getId());
         result = result && executorToParentGroupsCache.remove(executor.getId());
         if (executor instanceof Group) {
             Set<Executor> executors = groupToMembersCache.get(executor.getId());
@@ -209,15 +231,11 @@ class ExecutorCacheImpl extends BaseCacheImpl implements ManageableExecutorCache
     public boolean onGroupMembersChange(Group group) {
         boolean result = true;
         groupToMembersCache.remove(group.getId());
-        groupToAllActorMembersCache.remove(group.getId());
-        batchAllExecutors.clear();
-        Set<Group> upperGroups = executorToAllParentGroupsCache.get(group.getId());
-        if (upperGroups != null) {
-            for (Group upperGroup : upperGroups) {
-                groupToMembersCache.remove(upperGroup.getId());
-                groupToAllActorMembersCache.remove(upperGroup.getId());
-            }
+        if (membershipGraph != null) {
+            membershipGraph.invalidateAllActors(group.getId());
         }
+        batchAllExecutors.clear();
+        clearUpperGroupsCaches(group.getId());
         return result;
     }
 
@@ -226,6 +244,19 @@ class ExecutorCacheImpl extends BaseCacheImpl implements ManageableExecutorCache
         return clearGroupMembersCaches(executor);
     }
 
+    /**
+     * Clears members caches for all (recursive) parent groups of executor.
+     */
+    private void clearUpperGroupsCaches(Long executorId) {
+        long[] upperGroupIds = membershipGraph == null ? null : membershipGraph.getAllParentIds(executorId);
+        if (upperGroupIds != null) {
+            for (long upperGroupId : upperGroupIds) {
+                groupToMembersCache.remove(upperGroupId);
+                membershipGraph.invalidateAllActors(upperGroupId);
+            }
+        }
+    }
+
     private void addExecutorToCaches(Executor executor) {
         idToExecutorCache.put(executor.getId(), executor);
         nameToExecutorCache.put(executor.getName(), executor);
@@ -264,50 +295,7 @@ class ExecutorCacheImpl extends BaseCacheImpl implements ManageableExecutorCache
             }
         }
 
-        for (Executor executor : executors) {
-            fillAllParentsCache(executorToAllParentGroupsCache, nameToExecutorCache.get(executor.getName()), executorToParentGroupsCache);
-            if (executor instanceof Group) {
-                fillActorMembersCache(groupToAllActorMembersCache, (Group) (nameToExecutorCache.get(executor.getName())), groupToMembersCache);
-            }
-            if (!context.isInitializationStillRequired()) {
-                return;
-            }
-        }
-    }
-
-    private Set<Group> fillAllParentsCache(Cache<Long, HashSet<Group>> cache, Executor executor, Cache<Long, HashSet<Group>> mapExecutorToParents) {
-        HashSet<Group> executorGroups = cache.get(executor.getId());
-        if (executorGroups != null) {
-            return executorGroups;
-        }
-        executorGroups = new HashSet<Group>();
-        cache.put(executor.getId(), executorGroups);
-        if (mapExecutorToParents.get(executor.getId()) != null) {
-            for (Group group : mapExecutorToParents.get(executor.getId())) {
-                executorGroups.add(group);
-                executorGroups.addAll(fillAllParentsCache(cache, group, mapExecutorToParents));
-            }
-        }
-        return executorGroups;
-    }
-
-    private Set<Actor> fillActorMembersCache(Cache<Long, HashSet<Actor>> cache, Group group, Cache<Long, HashSet<Executor>> mapGroupToMembers) {
-        HashSet<Actor> actorMembers = cache.get(group.getId());
-        if (actorMembers != null) {
-            return actorMembers;
-        }
-        actorMembers = new HashSet<Actor>();
-        cache.put(group.getId(), actorMembers);
-        if (mapGroupToMembers.get(group.getId()) != null) {
-            for (Executor ex : mapGroupToMembers.get(group.getId())) {
-                if (ex instanceof Actor) {
-                    actorMembers.add((Actor) ex);
-                } else {
-                    actorMembers.addAll(fillActorMembersCache(cache, (Group) ex, mapGroupToMembers));
-                }
-            }
-        }
-        return actorMembers;
+        membershipGraph = new ExecutorMembershipGraph(executors, memberships);
     }
 
     private <T> List<T> getAll(Class<?> clazz) {
@@ -327,8 +315,13 @@ class ExecutorCacheImpl extends BaseCacheImpl implements ManageableExecutorCache
     private static class BatchPresentationFieldEquals {
         private final BatchPresentation batchPresentation;
 
-        BatchPresentationFieldEquals(BatchPresentation batchPresentation) {
-            this.batchPresentation = batchPresentation.clone();
+        /**
+         * @param copy
+         *            Flag, equals to true, if batch presentation must be copied (for keys, stored in cache); lookup keys may use batch presentation as
+         *            is.
+         */
+        BatchPresentationFieldEquals(BatchPresentation batchPresentation, boolean copy) {
+            this.batchPresentation = copy ? batchPresentation.clone() : batchPresentation;
         }
 
         @Override
@@ -0,0 +1,225 @@
+/*
+ * This file is part of the RUNA WFE project.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; version 2.1
+ * of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+package ru.runa.wfe.user.cache;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.google.common.collect.Sets;
+
+import ru.runa.wfe.user.Executor;
+import ru.runa.wfe.user.ExecutorGroupMembership;
+import ru.runa.wfe.user.Group;
+
+/**
+ * Compact graph of executor group memberships. Executors are addressed by index in sorted identities array; direct memberships are stored as
+ * indexes arrays. Transitive parent groups and actor members are computed on first request and stored as identities arrays, so graph does not hold
+ * executor entities at all.
+ * <p/>
+ * Graph structure is not changed after creation. Changed executors must be invalidated; for invalidated executors graph returns null, as if data
+ * is not cached.
+ */
+class ExecutorMembershipGraph {
+    /**
+     * Sorted identities of all executors. Executor index in this array is used as executor index in graph.
+     */
+    private final long[] ids;
+    /**
+     * Indexes of executors, which is {@link Group}.
+     */
+    private final BitSet groups = new BitSet();
+    /**
+     * For each executor: indexes of groups, executor is direct member of.
+     */
+    private final int[][] parents;
+    /**
+     * For each executor: indexes of direct group members (empty for actors).
+     */
+    private final int[][] members;
+    /**
+     * For each executor: identities of all (recursive) parent groups. Computed on first request.
+     */
+    private final AtomicReferenceArray<long[]> allParents;
+    /**
+     * For each group: identities of all (recursive) actor members. Computed on first request.
+     */
+    private final AtomicReferenceArray<long[]> allActors;
+    /**
+     * Indexes of executors with invalidated parent groups.
+     */
+    private final Set<Integer> invalidParents = Sets.newConcurrentHashSet();
+    /**
+     * Indexes of groups with invalidated actor members.
+     */
+    private final Set<Integer> invalidActors = Sets.newConcurrentHashSet();
+
+    ExecutorMembershipGraph(List<Executor> executors, List<ExecutorGroupMembership> memberships) {
+        ids = new long[executors.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = executors.get(i).getId();
+        }
+        Arrays.sort(ids);
+        for (Executor executor : executors) {
+            if (executor instanceof Group) {
+                groups.set(indexOf(executor.getId()));
+            }
+        }
+        int[] parentsCount = new int[ids.length];
+        int[] membersCount = new int[ids.length];
+        int[][] membershipIndexes = new int[memberships.size()][];
+        for (int i = 0; i < membershipIndexes.length; i++) {
+            ExecutorGroupMembership membership = memberships.get(i);
+            int groupIndex = indexOf(membership.getGroup().getId());
+            int executorIndex = indexOf(membership.getExecutor().getId());
+            if (groupIndex < 0 || executorIndex < 0) {
+                continue;
+            }
+            membershipIndexes[i] = new int[] { groupIndex, executorIndex };
+            parentsCount[executorIndex]++;
+            membersCount[groupIndex]++;
+        }
+        parents = new int[ids.length][];
+        members = new int[ids.length][];
+        for (int i = 0; i < ids.length; i++) {
+            parents[i] = new int[parentsCount[i]];
+            members[i] = new int[membersCount[i]];
+        }
+        for (int[] membership : membershipIndexes) {
+            if (membership == null) {
+                continue;
+            }
+            int groupIndex = membership[0];
+            int executorIndex = membership[1];
+            parents[executorIndex][--parentsCount[executorIndex]] = groupIndex;
+            members[groupIndex][--membersCount[groupIndex]] = executorIndex;
+        }
+        allParents = new AtomicReferenceArray<long[]>(ids.length);
+        allActors = new AtomicReferenceArray<long[]>(ids.length);
+    }
+
+    /**
+     * Returns identities of all (recursive) parent groups of executor.
+     *
+     * @param executorId
+     *            Executor identity.
+     * @return Parent groups identities or null, if executor is unknown or invalidated.
+     */
+    long[] getAllParentIds(Long executorId) {
+        int index = indexOf(executorId);
+        if (index < 0 || invalidParents.contains(index)) {
+            return null;
+        }
+        long[] result = allParents.get(index);
+        if (result == null) {
+            result = collect(index, parents, false);
+            allParents.set(index, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns identities of all (recursive) actor members of group.
+     *
+     * @param groupId
+     *            Group identity.
+     * @return Actor members identities or null, if group is unknown or invalidated.
+     */
+    long[] getAllActorIds(Long groupId) {
+        int index = indexOf(groupId);
+        if (index < 0 || !groups.get(index) || invalidActors.contains(index)) {
+            return null;
+        }
+        long[] result = allActors.get(index);
+        if (result == null) {
+            result = collect(index, members, true);
+            allActors.set(index, result);
+        }
+        return result;
+    }
+
+    /**
+     * Invalidates all parent groups of executor.
+     *
+     * @return true, if executor parent groups was valid before call.
+     */
+    boolean invalidateAllParents(Long executorId) {
+        int index = indexOf(executorId);
+        return index >= 0 && invalidParents.add(index);
+    }
+
+    /**
+     * Invalidates all actor members of group.
+     *
+     * @return true, if group actor members was valid before call.
+     */
+    boolean invalidateAllActors(Long groupId) {
+        int index = indexOf(groupId);
+        return index >= 0 && groups.get(index) && invalidActors.add(index);
+    }
+
+    /**
+     * Collects identities of all executors, reachable from executor via adjacency.
+     *
+     * @param index
+     *            Start executor index.
+     * @param adjacency
+     *            Parents or members adjacency.
+     * @param actorsOnly
+     *            Flag, equals to true, if only actors (not groups) must be collected.
+     */
+    private long[] collect(int index, int[][] adjacency, boolean actorsOnly) {
+        BitSet visited = new BitSet();
+        BitSet collected = new BitSet();
+        int[] stack = new int[16];
+        int stackSize = 0;
+        stack[stackSize++] = index;
+        while (stackSize > 0) {
+            int current = stack[--stackSize];
+            for (int next : adjacency[current]) {
+                if (!actorsOnly || !groups.get(next)) {
+                    collected.set(next);
+                }
+                if (visited.get(next)) {
+                    continue;
+                }
+                visited.set(next);
+                if (stackSize == stack.length) {
+                    stack = Arrays.copyOf(stack, stackSize * 2);
+                }
+                stack[stackSize++] = next;
+            }
+        }
+        long[] result = new long[collected.cardinality()];
+        int resultIndex = 0;
+        for (int i = collected.nextSetBit(0); i >= 0; i = collected.nextSetBit(i + 1)) {
+            result[resultIndex++] = ids[i];
+        }
+        return result;
+    }
+
+    private int indexOf(Long executorId) {
+        if (executorId == null) {
+            return -1;
+        }
+        int index = Arrays.binarySearch(ids, executorId);
+        return index < 0 ? -1 : index;
+    }
+}
@@ -21,6 +21,16 @@ import ru.runa.wfe.var.Variable;
 @SuppressWarnings({ "unchecked", "rawtypes" })
 public class VariableDao extends GenericDao<Variable> {
 
+    /**
+     * Count of variable creations and deletions, made by current thread. Used by variable working sets to detect changes, made past them.
+     */
+    private static final ThreadLocal<long[]> modificationsCount = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+
     public Variable<?> get(Process process, String name) {
         QVariable v = QVariable.variable;
         return queryFactory.selectFrom(v).where(v.process.eq(process).and(v.name.eq(name))).fetchFirst();
@@ -107,9 +117,37 @@ public class VariableDao extends GenericDao<Variable> {
         return result;
     }
 
+    @Override
+    public Variable create(Variable entity) {
+        Variable result = super.create(entity);
+        modificationsCount.get()[0]++;
+        return result;
+    }
+
+    @Override
+    public void delete(Variable entity) {
+        super.delete(entity);
+        modificationsCount.get()[0]++;
+    }
+
     public void deleteAll(Process process) {
         log.debug("deleting variables for process " + process.getId());
         QVariable v = QVariable.variable;
         queryFactory.delete(v).where(v.process.eq(process)).execute();
+        modificationsCount.get()[0]++;
+    }
+
+    /**
+     * @return count of variable creations and deletions, made by current thread.
+     */
+    public long getModificationsCount() {
+        return modificationsCount.get()[0];
+    }
+
+    /**
+     * @return true, if variable is persistent and not deleted in current session.
+     */
+    public boolean isAttached(Variable<?> variable) {
+        return sessionFactory.getCurrentSession().contains(variable);
     }
 }
@@ -1,9 +1,13 @@
 package ru.runa.wfe.var.dao;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import ru.runa.wfe.commons.SystemProperties;
+import ru.runa.wfe.commons.cache.CacheStatistic;
+import ru.runa.wfe.commons.cache.StatisticCounter;
 import ru.runa.wfe.execution.Process;
 import ru.runa.wfe.var.Variable;
 import ru.runa.wfe.var.dto.WfVariable;
@@ -11,12 +15,19 @@ import ru.runa.wfe.var.dto.WfVariable;
 /**
  * Supports variable loading via {@link VariableDao} and converting to {@link WfVariable}. Variables may be preloaded and passed to this component in
  * case of mass variables loading.
+ * <p/>
+ * If process variables is not preloaded, all process variables is loaded at once on first access and kept in process working set for component
+ * lifetime. Working set is not affected by variable changes (variables are managed by hibernate session and only changed variables is written on
+ * flush), but must be notified about variables creation and deletion via {@link #onVariableCreated(Variable)} and
+ * {@link #onVariableDeleted(Variable)}. If variables is created or deleted past this component, absent variables is reloaded via {@link VariableDao}.
  *
  * @author AL
  */
 @SuppressWarnings({ "unchecked" })
 public class VariableLoaderDaoFallback extends AbstractVariableLoader {
 
+    private static final StatisticCounter workingSetStatistic = CacheStatistic.registerCacheCounter("variableWorkingSet");
+
     /**
      * {@link VariableDao} for loading variables if no preloaded variable is available.
      */
@@ -28,6 +39,11 @@ public class VariableLoaderDaoFallback extends AbstractVariableLoader {
      */
     private final Map<Process, Map<String, Variable<?>>> loadedVariables;
 
+    /**
+     * Process working sets, loaded by this component.
+     */
+    private final Map<Process, ProcessWorkingSet> workingSets = new HashMap<Process, ProcessWorkingSet>();
+
     /**
      * Supports variable loading via {@link VariableDao} and converting to {@link WfVariable}. Variables may be preloaded and passed to this component
      * in case of mass variables loading.
@@ -45,10 +61,62 @@ public class VariableLoaderDaoFallback extends AbstractVariableLoader {
     @Override
     public Variable<?> get(Process process, String name) {
         Map<String, Variable<?>> loadedProcessVariables = loadedVariables.get(process);
-        if (loadedProcessVariables == null || !loadedProcessVariables.containsKey(name)) {
+        if (loadedProcessVariables != null && loadedProcessVariables.containsKey(name)) {
+            return loadedProcessVariables.get(name);
+        }
+        if (loadedProcessVariables != null || !SystemProperties.isVariableWorkingSetEnabled()) {
             return dao.get(process, name);
         }
-        return loadedProcessVariables.get(name);
+        ProcessWorkingSet workingSet = workingSets.get(process);
+        if (workingSet == null) {
+            workingSetStatistic.registerCacheGetMiss();
+            long modificationsCount = dao.getModificationsCount();
+            Map<String, Variable<?>> variables = dao.getVariables(Collections.singleton(process)).get(process);
+            workingSet = new ProcessWorkingSet(variables, modificationsCount);
+            workingSets.put(process, workingSet);
+            return variables.get(name);
+        }
+        Variable<?> variable = workingSet.variables.get(name);
+        if (variable != null ? dao.isAttached(variable) : workingSet.modificationsCount == dao.getModificationsCount()) {
+            workingSetStatistic.registerCacheGetHit();
+            return variable;
+        }
+        workingSetStatistic.registerCacheGetMiss();
+        variable = dao.get(process, name);
+        if (variable == null) {
+            workingSet.variables.remove(name);
+        } else {
+            workingSet.variables.put(name, variable);
+        }
+        return variable;
+    }
+
+    /**
+     * Notifies component about variable creation via {@link VariableDao}.
+     *
+     * @param variable
+     *            Created variable.
+     */
+    public void onVariableCreated(Variable<?> variable) {
+        ProcessWorkingSet workingSet = workingSets.get(variable.getProcess());
+        if (workingSet != null) {
+            workingSet.variables.put(variable.getName(), variable);
+            workingSet.onModification(dao.getModificationsCount());
+        }
+    }
+
+    /**
+     * Notifies component about variable deletion via {@link VariableDao}.
+     *
+     * @param variable
+     *            Deleted variable.
+     */
+    public void onVariableDeleted(Variable<?> variable) {
+        ProcessWorkingSet workingSet = workingSets.get(variable.getProcess());
+        if (workingSet != null) {
+            workingSet.variables.remove(variable.getName());
+            workingSet.onModification(dao.getModificationsCount());
+        }
     }
 
     @Override
@@ -60,4 +128,34 @@ public class VariableLoaderDaoFallback extends AbstractVariableLoader {
     public Map<String, Object> getAll(Process process) {
         return dao.getAll(process);
     }
+
+    /**
+     * All variables of process, loaded at once.
+     */
+    private static class ProcessWorkingSet {
+        /**
+         * Map from variable name to variable. Variable is absent in process, if no entry for it name exists and no variables was created past
+         * working set.
+         */
+        private final Map<String, Variable<?>> variables;
+
+        /**
+         * {@link VariableDao#getModificationsCount()} value, then working set was complete last time.
+         */
+        private long modificationsCount;
+
+        ProcessWorkingSet(Map<String, Variable<?>> variables, long modificationsCount) {
+            this.variables = variables;
+            this.modificationsCount = modificationsCount;
+        }
+
+        /**
+         * Registers modification, made via working set. Working set is still complete, if no other modifications was made since last check.
+         */
+        void onModification(long currentModificationsCount) {
+            if (modificationsCount + 1 == currentModificationsCount) {
+                modificationsCount = currentModificationsCount;
+            }
+        }
+    }
 }
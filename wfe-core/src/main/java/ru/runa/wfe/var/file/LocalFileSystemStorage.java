@@ -1,17 +1,37 @@
 package ru.runa.wfe.var.file;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystemException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.List;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
 import ru.runa.wfe.InternalApplicationException;
 import ru.runa.wfe.commons.SystemProperties;
 import ru.runa.wfe.execution.ExecutionContext;
 import ru.runa.wfe.var.Variable;
 
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.google.common.io.Files;
 
 public class LocalFileSystemStorage implements FileVariableStorage {
+    private static final Log log = LogFactory.getLog(LocalFileSystemStorage.class);
+    /**
+     * Directory of content-addressed storage, contains files named by SHA-256 digest of content.
+     */
+    static final String CONTENT_DIRECTORY = "content";
 
     static File storageDir;
 
@@ -60,11 +80,11 @@ public class LocalFileSystemStorage implements FileVariableStorage {
 
     private FileVariable save(Variable<?> variable, FileVariable fileVariable, Integer index) {
         if (SystemProperties.isLocalFileStorageEnabled() && fileVariable != null
-                && fileVariable.getData().length > SystemProperties.getLocalFileStorageFileLimit()) {
+                && getSize(fileVariable) > SystemProperties.getLocalFileStorageFileLimit()) {
             try {
                 String variableName = index != null ? variable.getName() + index : variable.getName();
                 LocalFileSystemVariable fileSystemVariable = new LocalFileSystemVariable(variable, variableName, fileVariable);
-                Files.write(fileVariable.getData(), getContentFile(fileSystemVariable.getVariablePath(), true));
+                write(fileVariable, getContentFile(fileSystemVariable.getVariablePath(), true));
                 return fileSystemVariable;
             } catch (IOException e) {
                 throw new InternalApplicationException("Unable to save file variable to local drive", e);
@@ -72,4 +92,162 @@ public class LocalFileSystemStorage implements FileVariableStorage {
         }
         return fileVariable;
     }
+
+    private static long getSize(FileVariable fileVariable) {
+        if (fileVariable instanceof StreamedFileVariable) {
+            return ((StreamedFileVariable) fileVariable).getSize();
+        }
+        return fileVariable.getData().length;
+    }
+
+    /**
+     * Writes file variable content to file. Content of streamed file variables is copied without loading to memory; content from local storage is
+     * transferred by file channels. Content is written to temporary file, which replaces target file, so content of target file is never changed
+     * in place (it may be hard link to content, shared by other variables).
+     */
+    static void write(FileVariable fileVariable, File file) throws IOException {
+        if (SystemProperties.isLocalFileStorageContentAddressed()) {
+            writeContentAddressed(fileVariable, file);
+            return;
+        }
+        if (fileVariable instanceof LocalFileSystemVariable && ((LocalFileSystemVariable) fileVariable).getContentFile().equals(file)) {
+            return;
+        }
+        File tempFile = File.createTempFile("content", ".tmp", file.getParentFile());
+        try {
+            writeContent(fileVariable, tempFile);
+            java.nio.file.Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    private static void writeContent(FileVariable fileVariable, File file) throws IOException {
+        if (fileVariable instanceof LocalFileSystemVariable) {
+            File source = ((LocalFileSystemVariable) fileVariable).getContentFile();
+            try (FileChannel in = new FileInputStream(source).getChannel(); FileChannel out = new FileOutputStream(file).getChannel()) {
+                long size = in.size();
+                long position = 0;
+                while (position < size) {
+                    position += in.transferTo(position, size - position, out);
+                }
+            }
+        } else if (fileVariable instanceof StreamedFileVariable) {
+            try (InputStream in = ((StreamedFileVariable) fileVariable).getInputStream()) {
+                Files.asByteSink(file).writeFrom(in);
+            }
+        } else {
+            Files.write(fileVariable.getData(), file);
+        }
+    }
+
+    /**
+     * Content-addressed write: content is stored once in {@link #CONTENT_DIRECTORY} under its SHA-256 digest and variable file becomes hard link
+     * to it. Content from local storage is linked without reading. Count of links to content file is its reference count, unreferenced content is
+     * removed by {@link #removeUnusedContent(long)}.
+     */
+    static void writeContentAddressed(FileVariable fileVariable, File file) throws IOException {
+        if (fileVariable instanceof LocalFileSystemVariable) {
+            File source = ((LocalFileSystemVariable) fileVariable).getContentFile();
+            if (!source.equals(file)) {
+                link(source, file);
+            }
+            return;
+        }
+        File contentDir = new File(getLocalFileStorage(), CONTENT_DIRECTORY);
+        contentDir.mkdirs();
+        File tempFile = File.createTempFile("content", ".tmp", contentDir);
+        try {
+            Hasher hasher = Hashing.sha256().newHasher();
+            try (InputStream in = getInputStream(fileVariable); OutputStream out = new FileOutputStream(tempFile)) {
+                byte[] buffer = new byte[8192];
+                int count;
+                while ((count = in.read(buffer)) != -1) {
+                    hasher.putBytes(buffer, 0, count);
+                    out.write(buffer, 0, count);
+                }
+            }
+            String hash = hasher.hash().toString();
+            File contentFile = new File(new File(contentDir, hash.substring(0, 2)), hash);
+            try {
+                link(contentFile, file);
+                return;
+            } catch (NoSuchFileException e) {
+                // new content
+            }
+            contentFile.getParentFile().mkdirs();
+            java.nio.file.Files.move(tempFile.toPath(), contentFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            link(contentFile, file);
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    private static InputStream getInputStream(FileVariable fileVariable) throws IOException {
+        if (fileVariable instanceof StreamedFileVariable) {
+            return ((StreamedFileVariable) fileVariable).getInputStream();
+        }
+        return new ByteArrayInputStream(fileVariable.getData());
+    }
+
+    /**
+     * Replaces file with hard link to source file; copies source file if file system does not support hard links.
+     */
+    private static void link(File source, File file) throws IOException {
+        Path sourcePath = source.toPath();
+        Path path = file.toPath();
+        java.nio.file.Files.deleteIfExists(path);
+        try {
+            java.nio.file.Files.createLink(path, sourcePath);
+        } catch (NoSuchFileException e) {
+            throw e;
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            log.debug("Unable to link " + file + " to " + source + ": " + e);
+            java.nio.file.Files.copy(sourcePath, path);
+        }
+    }
+
+    /**
+     * Removes content files, which are not referenced by any file variable (has no hard links). Files, modified not long ago, are skipped as
+     * they can be linked right now.
+     *
+     * @param minAgeMillis
+     *            minimal age of removed content files
+     * @return count of removed files
+     */
+    public static int removeUnusedContent(long minAgeMillis) throws IOException {
+        File contentDir = new File(getLocalFileStorage(), CONTENT_DIRECTORY);
+        File[] hashDirs = contentDir.listFiles();
+        if (hashDirs == null) {
+            return 0;
+        }
+        long maxLastModified = System.currentTimeMillis() - minAgeMillis;
+        int count = 0;
+        for (File hashDir : hashDirs) {
+            File[] contentFiles = hashDir.listFiles();
+            if (contentFiles == null) {
+                if (hashDir.lastModified() < maxLastModified) {
+                    // abandoned temporary file
+                    hashDir.delete();
+                }
+                continue;
+            }
+            for (File contentFile : contentFiles) {
+                if (contentFile.lastModified() >= maxLastModified) {
+                    continue;
+                }
+                Integer linksCount;
+                try {
+                    linksCount = (Integer) java.nio.file.Files.getAttribute(contentFile.toPath(), "unix:nlink");
+                } catch (UnsupportedOperationException | IllegalArgumentException e) {
+                    log.warn("Links count is not supported by file system, unused content is not removed: " + e);
+                    return count;
+                }
+                if (linksCount == 1 && contentFile.delete()) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
 }
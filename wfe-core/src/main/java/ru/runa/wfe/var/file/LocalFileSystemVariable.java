@@ -1,7 +1,9 @@
 package ru.runa.wfe.var.file;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 import ru.runa.wfe.InternalApplicationException;
 import ru.runa.wfe.var.Variable;
@@ -15,7 +17,7 @@ import com.google.common.io.Files;
  * @author dofs
  * @since 4.0
  */
-public class LocalFileSystemVariable implements FileVariable {
+public class LocalFileSystemVariable implements StreamedFileVariable {
     private static final long serialVersionUID = 1L;
     private String name;
     private String contentType;
@@ -43,9 +45,16 @@ public class LocalFileSystemVariable implements FileVariable {
         return variablePath;
     }
 
+    /**
+     * @return file in local storage with variable content
+     */
+    public File getContentFile() {
+        return LocalFileSystemStorage.getContentFile(variablePath, false);
+    }
+
     @Override
     public byte[] getData() {
-        File file = LocalFileSystemStorage.getContentFile(variablePath, false);
+        File file = getContentFile();
         try {
             return Files.toByteArray(file);
         } catch (IOException e) {
@@ -53,6 +62,16 @@ public class LocalFileSystemVariable implements FileVariable {
         }
     }
 
+    @Override
+    public long getSize() {
+        return getContentFile().length();
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return new FileInputStream(getContentFile());
+    }
+
     @Override
     public String getName() {
         return name;
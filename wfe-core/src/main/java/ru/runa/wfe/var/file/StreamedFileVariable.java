@@ -0,0 +1,21 @@
+package ru.runa.wfe.var.file;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * File variable, which content may be read without loading it to memory. {@link #getData()} still loads whole content.
+ */
+public interface StreamedFileVariable extends FileVariable {
+
+    /**
+     * @return file content length in bytes
+     */
+    public long getSize();
+
+    /**
+     * @return new stream for file content reading, must be closed by caller
+     */
+    public InputStream getInputStream() throws IOException;
+
+}
@@ -0,0 +1,60 @@
+package ru.runa.wfe.audit.dao;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.NoSuchElementException;
+
+import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import ru.runa.wfe.audit.ProcessLog;
+
+public class ProcessLogIteratorTest {
+
+    @Test()
+    public void returnedLogsEvictedTest() {
+        ProcessLog first = mock(ProcessLog.class);
+        ProcessLog second = mock(ProcessLog.class);
+        Session session = mock(Session.class);
+        ScrollableResults results = mock(ScrollableResults.class);
+        when(results.next()).thenReturn(true, true, false);
+        when(results.get(0)).thenReturn(first, second);
+        ProcessLogIterator iterator = new ProcessLogIterator(session, createQuery(results), 10);
+        Assert.assertSame(iterator.next(), first);
+        verify(session, never()).evict(any());
+        Assert.assertTrue(iterator.hasNext());
+        verify(session).evict(first);
+        Assert.assertSame(iterator.next(), second);
+        Assert.assertFalse(iterator.hasNext());
+        verify(session).evict(second);
+        verify(results, times(1)).close();
+        iterator.close();
+        verify(results, times(1)).close();
+    }
+
+    @Test(expectedExceptions = NoSuchElementException.class)
+    public void noMoreLogsTest() {
+        ScrollableResults results = mock(ScrollableResults.class);
+        ProcessLogIterator iterator = new ProcessLogIterator(mock(Session.class), createQuery(results), 10);
+        iterator.next();
+    }
+
+    private static Query createQuery(ScrollableResults results) {
+        Query query = mock(Query.class);
+        when(query.setFetchSize(anyInt())).thenReturn(query);
+        when(query.setReadOnly(anyBoolean())).thenReturn(query);
+        when(query.scroll(any(ScrollMode.class))).thenReturn(results);
+        return query;
+    }
+}
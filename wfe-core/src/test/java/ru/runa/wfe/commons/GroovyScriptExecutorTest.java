@@ -0,0 +1,53 @@
+package ru.runa.wfe.commons;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Map;
+
+import org.codehaus.groovy.control.CompilationFailedException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import ru.runa.wfe.InternalApplicationException;
+import ru.runa.wfe.var.VariableProvider;
+
+public class GroovyScriptExecutorTest {
+
+    @Test()
+    public void compiledScriptReusedWithFreshBindingTest() {
+        GroovyScriptExecutor executor = new GroovyScriptExecutor();
+        VariableProvider first = createVariableProvider(2L);
+        VariableProvider second = createVariableProvider(5L);
+        Assert.assertEquals(executor.evaluateScript(first, "a + 1"), 3L);
+        Assert.assertEquals(executor.evaluateScript(second, "a + 1"), 6L);
+    }
+
+    @Test()
+    public void executeScriptReturnsChangedVariablesTest() {
+        GroovyScriptExecutor executor = new GroovyScriptExecutor();
+        Map<String, Object> result = executor.executeScript(createVariableProvider(2L), "b = a * 2");
+        Assert.assertEquals(result.size(), 1);
+        Assert.assertEquals(result.get("b"), 4L);
+        result = executor.executeScript(createVariableProvider(3L), "b = a * 2");
+        Assert.assertEquals(result.get("b"), 6L);
+    }
+
+    @Test()
+    public void compilationErrorTest() {
+        try {
+            new GroovyScriptExecutor().evaluateScript(createVariableProvider(1L), "a +");
+            Assert.fail("compilation error expected");
+        } catch (InternalApplicationException e) {
+            // groovy exceptions are wrapped by executor
+        } catch (CompilationFailedException e) {
+            // syntax errors are propagated as is
+        }
+    }
+
+    private static VariableProvider createVariableProvider(Long a) {
+        VariableProvider variableProvider = mock(VariableProvider.class);
+        when(variableProvider.getValue("a")).thenReturn(a);
+        return variableProvider;
+    }
+}
@@ -0,0 +1,50 @@
+package ru.runa.wfe.commons.cache;
+
+import java.util.HashSet;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.Sets;
+
+public class OffHeapCacheSupportTest {
+
+    @Test()
+    public void committedValuesAreCopiedTest() {
+        OffHeapCacheSupport<Long, HashSet<Long>> cache = new OffHeapCacheSupport<Long, HashSet<Long>>("test");
+        HashSet<Long> value = Sets.newHashSet(1L);
+        cache.put(1L, value);
+        value.add(2L);
+        Assert.assertSame(cache.get(1L), value);
+        Assert.assertEquals(cache.getOffHeapSize(), 0);
+
+        cache.commitCache();
+        Assert.assertTrue(cache.getOffHeapSize() > 0);
+        Assert.assertEquals(cache.get(1L), Sets.newHashSet(1L, 2L));
+        Assert.assertNotSame(cache.get(1L), value);
+        cache.put(2L, Sets.newHashSet(3L));
+        Assert.assertEquals(cache.get(2L), Sets.newHashSet(3L));
+        Assert.assertTrue(cache.contains(2L));
+
+        Assert.assertTrue(cache.remove(1L));
+        Assert.assertFalse(cache.remove(1L));
+        Assert.assertNull(cache.get(1L));
+        cache.clear();
+        Assert.assertFalse(cache.keySet().iterator().hasNext());
+        Assert.assertEquals(cache.getOffHeapSize(), 0);
+    }
+
+    @Test()
+    public void nullValuesAreCachedTest() {
+        OffHeapCacheSupport<Long, HashSet<Long>> cache = new OffHeapCacheSupport<Long, HashSet<Long>>("test");
+        cache.put(1L, null);
+        cache.commitCache();
+        cache.put(2L, null);
+        for (Long key : new Long[] { 1L, 2L }) {
+            Assert.assertTrue(cache.contains(key));
+            Assert.assertNull(cache.get(key));
+        }
+        Assert.assertTrue(cache.remove(1L));
+        Assert.assertFalse(cache.contains(1L));
+    }
+}
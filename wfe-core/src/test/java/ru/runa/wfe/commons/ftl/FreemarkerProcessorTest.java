@@ -0,0 +1,21 @@
+package ru.runa.wfe.commons.ftl;
+
+import java.util.Collections;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class FreemarkerProcessorTest {
+
+    @Test()
+    public void cachedTemplateProcessedWithFreshModelTest() {
+        String template = "Hello, ${name}!";
+        Assert.assertEquals(FreemarkerProcessor.process(template, Collections.singletonMap("name", "first")), "Hello, first!");
+        Assert.assertEquals(FreemarkerProcessor.process(template, Collections.singletonMap("name", "second")), "Hello, second!");
+    }
+
+    @Test(expectedExceptions = RuntimeException.class)
+    public void syntaxErrorTest() {
+        FreemarkerProcessor.process("<#if true>unclosed", Collections.emptyMap());
+    }
+}
@@ -0,0 +1,59 @@
+package ru.runa.wfe.extension.handler.var;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.testng.annotations.Test;
+
+import ru.runa.wfe.execution.ExecutionContext;
+import ru.runa.wfe.execution.Process;
+import ru.runa.wfe.var.VariableProvider;
+import ru.runa.wfe.var.dto.WfVariable;
+
+public class FormulaActionHandlerTest {
+
+    @Test()
+    public void arithmeticTest() {
+        ExecutionContext context = execute("a = 2 + 3 * 4; b = (2 + 3) * 4\nc = \"text\"", null);
+        verify(context).setVariableValue("a", 14L);
+        verify(context).setVariableValue("b", 20L);
+        verify(context).setVariableValue("c", "text");
+    }
+
+    @Test()
+    public void compiledFormulaReusedTest() {
+        String configuration = "a = x * 2 > 5";
+        verify(execute(configuration, 2L)).setVariableValue("a", false);
+        verify(execute(configuration, 3L)).setVariableValue("a", true);
+    }
+
+    @Test()
+    public void nullOperandTest() {
+        verify(execute("a = x + 1 * unknown_variable", null)).setVariableValue("a", null);
+    }
+
+    @Test()
+    public void functionsTest() {
+        ExecutionContext context = execute("a = round(2.6); b = round_down(x, 1)", 2.35);
+        verify(context).setVariableValue("a", 3L);
+        verify(context).setVariableValue("b", 2.3);
+    }
+
+    @Test()
+    public void syntaxErrorTest() {
+        verify(execute("a = 1 +", null)).setVariableValue("a", null);
+    }
+
+    private static ExecutionContext execute(String configuration, Object x) {
+        ExecutionContext context = mock(ExecutionContext.class);
+        VariableProvider variableProvider = mock(VariableProvider.class);
+        when(context.getVariableProvider()).thenReturn(variableProvider);
+        when(context.getProcess()).thenReturn(new Process());
+        when(variableProvider.getVariable("x")).thenReturn(new WfVariable("x", x));
+        FormulaActionHandler handler = new FormulaActionHandler();
+        handler.setConfiguration(configuration);
+        handler.execute(context);
+        return context;
+    }
+}
@@ -0,0 +1,69 @@
+package ru.runa.wfe.security.dao;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import ru.runa.wfe.security.Permission;
+import ru.runa.wfe.security.SecuredObjectType;
+
+public class ObjectPermissionsCacheTest {
+
+    @Test()
+    public void maskTest() {
+        long read = ObjectPermissionsCache.getMask(Collections.singleton(Permission.READ));
+        long update = ObjectPermissionsCache.getMask(Collections.singleton(Permission.UPDATE));
+        Assert.assertEquals(Long.bitCount(read), 1);
+        Assert.assertNotEquals(read, update);
+        Assert.assertEquals((long) ObjectPermissionsCache.getMask(Arrays.asList(Permission.READ, Permission.UPDATE)), read | update);
+        Assert.assertEquals((long) ObjectPermissionsCache.getMask(Collections.<Permission> emptyList()), 0L);
+    }
+
+    @Test()
+    public void isAllowedTest() {
+        long read = ObjectPermissionsCache.getMask(Collections.singleton(Permission.READ));
+        long update = ObjectPermissionsCache.getMask(Collections.singleton(Permission.UPDATE));
+        ObjectPermissionsCache.ObjectPermissions permissions = createPermissions(1L, read);
+        Assert.assertTrue(permissions.isAllowed(Sets.newHashSet(1L, 2L, 3L), read));
+        Assert.assertTrue(permissions.isAllowed(Collections.singleton(1L), read | update));
+        Assert.assertFalse(permissions.isAllowed(Collections.singleton(1L), update));
+        Assert.assertFalse(permissions.isAllowed(Collections.singleton(2L), read));
+    }
+
+    @Test()
+    public void putAndChangeTest() {
+        ObjectPermissionsCache cache = new ObjectPermissionsCache();
+        ObjectPermissionsCache.ObjectPermissions permissions = createPermissions(1L, 1L);
+        Assert.assertNull(cache.get(SecuredObjectType.PROCESS, 10L));
+        cache.put(cache.getVersion(), SecuredObjectType.PROCESS, 10L, permissions);
+        Assert.assertSame(cache.get(SecuredObjectType.PROCESS, 10L), permissions);
+        Assert.assertNull(cache.get(SecuredObjectType.DEFINITION, 10L));
+
+        cache.onChange(SecuredObjectType.PROCESS, Collections.singletonList(10L));
+        Assert.assertNull(cache.get(SecuredObjectType.PROCESS, 10L));
+    }
+
+    @Test()
+    public void staleLoadIgnoredTest() {
+        ObjectPermissionsCache cache = new ObjectPermissionsCache();
+        long loadVersion = cache.getVersion();
+        cache.onChange(SecuredObjectType.PROCESS, Collections.singletonList(20L));
+        cache.put(loadVersion, SecuredObjectType.PROCESS, 10L, createPermissions(1L, 1L));
+        Assert.assertNull(cache.get(SecuredObjectType.PROCESS, 10L));
+        cache.put(cache.getVersion(), SecuredObjectType.PROCESS, 10L, createPermissions(1L, 1L));
+        cache.onChange(null, null);
+        Assert.assertNull(cache.get(SecuredObjectType.PROCESS, 10L));
+    }
+
+    private static ObjectPermissionsCache.ObjectPermissions createPermissions(Long executorId, long mask) {
+        Map<Long, Long> masks = Maps.newHashMap();
+        masks.put(executorId, mask);
+        return new ObjectPermissionsCache.ObjectPermissions(masks);
+    }
+}
@@ -0,0 +1,131 @@
+package ru.runa.wfe.task.cache;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Map;
+import java.util.Set;
+
+import javax.transaction.Status;
+import javax.transaction.Transaction;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import ru.runa.wfe.commons.cache.Change;
+import ru.runa.wfe.commons.cache.ChangedObjectParameter;
+import ru.runa.wfe.task.Task;
+import ru.runa.wfe.user.Actor;
+import ru.runa.wfe.user.Executor;
+
+public class TaskListIndexTest {
+    private static final String[] PROPERTY_NAMES = new String[] { "name", "executor" };
+
+    @Test()
+    public void committedChangesAppliedInPlaceTest() throws Exception {
+        TaskListIndexCtrl index = new TaskListIndexCtrl();
+        Actor first = createActor(1L);
+        Actor second = createActor(2L);
+        index.putTaskIds(index.getVersion(), executorTasks(1L, 10L, 11L));
+        index.putTaskIds(index.getVersion(), executorTasks(2L));
+
+        Transaction transaction = createTransaction(Status.STATUS_COMMITTED);
+        index.onChange(transaction, changed(createTask(12L), Change.CREATE, first, null));
+        index.onChange(transaction, changed(createTask(10L), Change.UPDATE, second, first));
+        index.onChange(transaction, changed(createTask(11L), Change.DELETE, first, null));
+        Assert.assertEquals(index.getTaskIds(1L), Sets.newHashSet(10L, 11L));
+        index.onTransactionCompleted(transaction);
+
+        Assert.assertEquals(index.getTaskIds(1L), Sets.newHashSet(12L));
+        Assert.assertEquals(index.getTaskIds(2L), Sets.newHashSet(10L));
+        Assert.assertNull(index.getTaskIds(3L));
+    }
+
+    @Test()
+    public void rolledBackChangesDiscardedTest() throws Exception {
+        TaskListIndexCtrl index = new TaskListIndexCtrl();
+        index.putTaskIds(index.getVersion(), executorTasks(1L, 10L));
+        Transaction transaction = createTransaction(Status.STATUS_ROLLEDBACK);
+        index.onChange(transaction, changed(createTask(12L), Change.CREATE, createActor(1L), null));
+        index.onTransactionCompleted(transaction);
+        Assert.assertEquals(index.getTaskIds(1L), Sets.newHashSet(10L));
+    }
+
+    @Test()
+    public void unknownOutcomeInvalidatesExecutorTest() throws Exception {
+        TaskListIndexCtrl index = new TaskListIndexCtrl();
+        index.putTaskIds(index.getVersion(), executorTasks(1L, 10L));
+        Transaction transaction = createTransaction(Status.STATUS_NO_TRANSACTION);
+        index.onChange(transaction, changed(createTask(12L), Change.CREATE, createActor(1L), null));
+        index.onTransactionCompleted(transaction);
+        Assert.assertNull(index.getTaskIds(1L));
+    }
+
+    @Test()
+    public void staleLoadIgnoredTest() throws Exception {
+        TaskListIndexCtrl index = new TaskListIndexCtrl();
+        long loadVersion = index.getVersion();
+        Transaction transaction = createTransaction(Status.STATUS_COMMITTED);
+        index.onChange(transaction, changed(createTask(12L), Change.CREATE, createActor(1L), null));
+        index.onTransactionCompleted(transaction);
+        index.putTaskIds(loadVersion, executorTasks(1L));
+        Assert.assertNull(index.getTaskIds(1L));
+        index.putTaskIds(index.getVersion(), executorTasks(1L, 12L));
+        Assert.assertEquals(index.getTaskIds(1L), Sets.newHashSet(12L));
+    }
+
+    @Test()
+    public void indexSizeLimitedTest() throws Exception {
+        TaskListIndexCtrl index = new TaskListIndexCtrl(2);
+        long loadVersion = index.getVersion();
+        Transaction transaction = createTransaction(Status.STATUS_COMMITTED);
+        index.onChange(transaction, changed(createTask(12L), Change.CREATE, createActor(1L), null));
+        index.onTransactionCompleted(transaction);
+        int indexed = 0;
+        for (long executorId = 2; executorId < 20; executorId++) {
+            index.putTaskIds(index.getVersion(), executorTasks(executorId, executorId * 10));
+        }
+        for (long executorId = 1; executorId < 20; executorId++) {
+            if (index.getTaskIds(executorId) != null) {
+                indexed++;
+            }
+        }
+        Assert.assertTrue(indexed <= 2);
+        // change of evicted executor is still newer than stale load
+        index.putTaskIds(loadVersion, executorTasks(1L));
+        Assert.assertNull(index.getTaskIds(1L));
+    }
+
+    private static Map<Long, Set<Long>> executorTasks(Long executorId, Long... taskIds) {
+        Map<Long, Set<Long>> result = Maps.newHashMap();
+        result.put(executorId, Sets.newHashSet(taskIds));
+        return result;
+    }
+
+    private static Actor createActor(Long id) {
+        Actor actor = new Actor("actor" + id, null);
+        actor.setId(id);
+        return actor;
+    }
+
+    private static Task createTask(Long id) {
+        Task task = mock(Task.class);
+        when(task.getId()).thenReturn(id);
+        return task;
+    }
+
+    private static Transaction createTransaction(int status) throws Exception {
+        Transaction transaction = mock(Transaction.class);
+        when(transaction.getStatus()).thenReturn(status);
+        return transaction;
+    }
+
+    private static ChangedObjectParameter changed(Task task, Change change, Executor executor, Executor previousExecutor) {
+        Object[] currentState = new Object[] { "task", executor };
+        Object[] previousState = change == Change.UPDATE ? new Object[] { "task", previousExecutor } : null;
+        return new ChangedObjectParameter(task, change, currentState, previousState, PROPERTY_NAMES, null);
+    }
+}
@@ -0,0 +1,63 @@
+package ru.runa.wfe.user.cache;
+
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.Lists;
+
+import ru.runa.wfe.user.Actor;
+import ru.runa.wfe.user.Executor;
+import ru.runa.wfe.user.ExecutorGroupMembership;
+import ru.runa.wfe.user.Group;
+
+public class ExecutorMembershipGraphTest {
+
+    @Test()
+    public void transitiveMembershipTest() {
+        Group root = createGroup(1L);
+        Group nested = createGroup(2L);
+        Actor first = createActor(10L);
+        Actor second = createActor(11L);
+        List<Executor> executors = Lists.<Executor> newArrayList(second, nested, first, root);
+        List<ExecutorGroupMembership> memberships = Lists.newArrayList(new ExecutorGroupMembership(root, nested), new ExecutorGroupMembership(
+                root, first), new ExecutorGroupMembership(nested, second));
+        ExecutorMembershipGraph graph = new ExecutorMembershipGraph(executors, memberships);
+        Assert.assertEquals(graph.getAllActorIds(1L), new long[] { 10L, 11L });
+        Assert.assertEquals(graph.getAllActorIds(2L), new long[] { 11L });
+        Assert.assertNull(graph.getAllActorIds(10L));
+        Assert.assertEquals(graph.getAllParentIds(11L), new long[] { 1L, 2L });
+        Assert.assertEquals(graph.getAllParentIds(10L), new long[] { 1L });
+        Assert.assertEquals(graph.getAllParentIds(1L), new long[0]);
+        Assert.assertNull(graph.getAllParentIds(12L));
+    }
+
+    @Test()
+    public void invalidationTest() {
+        Group group = createGroup(1L);
+        Actor actor = createActor(10L);
+        List<Executor> executors = Lists.<Executor> newArrayList(group, actor);
+        List<ExecutorGroupMembership> memberships = Lists.newArrayList(new ExecutorGroupMembership(group, actor));
+        ExecutorMembershipGraph graph = new ExecutorMembershipGraph(executors, memberships);
+        Assert.assertTrue(graph.invalidateAllParents(10L));
+        Assert.assertFalse(graph.invalidateAllParents(10L));
+        Assert.assertNull(graph.getAllParentIds(10L));
+        Assert.assertNotNull(graph.getAllActorIds(1L));
+        Assert.assertTrue(graph.invalidateAllActors(1L));
+        Assert.assertNull(graph.getAllActorIds(1L));
+        Assert.assertFalse(graph.invalidateAllParents(12L));
+    }
+
+    private static Group createGroup(Long id) {
+        Group group = new Group("group" + id, null);
+        group.setId(id);
+        return group;
+    }
+
+    private static Actor createActor(Long id) {
+        Actor actor = new Actor("actor" + id, null);
+        actor.setId(id);
+        return actor;
+    }
+}
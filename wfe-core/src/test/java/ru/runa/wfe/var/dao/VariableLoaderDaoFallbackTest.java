@@ -0,0 +1,102 @@
+package ru.runa.wfe.var.dao;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.Maps;
+
+import ru.runa.wfe.execution.Process;
+import ru.runa.wfe.var.Variable;
+
+public class VariableLoaderDaoFallbackTest {
+
+    @Test()
+    public void processVariablesLoadedOnceTest() {
+        Process process = new Process();
+        Variable<?> variable = createVariable(process, "a");
+        VariableDao dao = createDao(process, variable);
+        VariableLoaderDaoFallback loader = new VariableLoaderDaoFallback(dao, null);
+        Assert.assertSame(loader.get(process, "a"), variable);
+        Assert.assertSame(loader.get(process, "a"), variable);
+        Assert.assertNull(loader.get(process, "b"));
+        verify(dao, times(1)).getVariables(anyCollectionOf(Process.class));
+        verify(dao, never()).get(eq(process), anyString());
+    }
+
+    @Test()
+    public void createdVariableTrackedTest() {
+        Process process = new Process();
+        VariableDao dao = createDao(process);
+        VariableLoaderDaoFallback loader = new VariableLoaderDaoFallback(dao, null);
+        Assert.assertNull(loader.get(process, "a"));
+        Variable<?> variable = createVariable(process, "a");
+        when(dao.getModificationsCount()).thenReturn(1L);
+        loader.onVariableCreated(variable);
+        Assert.assertSame(loader.get(process, "a"), variable);
+        Assert.assertNull(loader.get(process, "b"));
+        verify(dao, never()).get(eq(process), anyString());
+    }
+
+    @Test()
+    public void foreignModificationReloadsAbsentVariablesTest() {
+        Process process = new Process();
+        VariableDao dao = createDao(process);
+        VariableLoaderDaoFallback loader = new VariableLoaderDaoFallback(dao, null);
+        Assert.assertNull(loader.get(process, "a"));
+        Variable<?> variable = createVariable(process, "a");
+        when(dao.getModificationsCount()).thenReturn(1L);
+        doReturn(variable).when(dao).get(process, "a");
+        Assert.assertSame(loader.get(process, "a"), variable);
+        Assert.assertSame(loader.get(process, "a"), variable);
+        verify(dao, times(1)).get(process, "a");
+    }
+
+    @Test()
+    public void preloadedVariablesUsedTest() {
+        Process process = new Process();
+        Variable<?> variable = createVariable(process, "a");
+        VariableDao dao = mock(VariableDao.class);
+        Map<Process, Map<String, Variable<?>>> loadedVariables = Maps.newHashMap();
+        Map<String, Variable<?>> processVariables = Maps.newHashMap();
+        processVariables.put("a", variable);
+        loadedVariables.put(process, processVariables);
+        VariableLoaderDaoFallback loader = new VariableLoaderDaoFallback(dao, loadedVariables);
+        Assert.assertSame(loader.get(process, "a"), variable);
+        Assert.assertNull(loader.get(process, "b"));
+        verify(dao, times(1)).get(process, "b");
+        verify(dao, never()).getVariables(anyCollectionOf(Process.class));
+    }
+
+    private static VariableDao createDao(Process process, Variable<?>... variables) {
+        VariableDao dao = mock(VariableDao.class);
+        Map<String, Variable<?>> processVariables = Maps.newHashMap();
+        for (Variable<?> variable : variables) {
+            processVariables.put(variable.getName(), variable);
+        }
+        Map<Process, Map<String, Variable<?>>> result = Maps.newHashMap();
+        result.put(process, processVariables);
+        when(dao.getVariables(anyCollectionOf(Process.class))).thenReturn(result);
+        when(dao.isAttached(any(Variable.class))).thenReturn(true);
+        return dao;
+    }
+
+    private static Variable<?> createVariable(Process process, String name) {
+        Variable<?> variable = mock(Variable.class);
+        when(variable.getName()).thenReturn(name);
+        when(variable.getProcess()).thenReturn(process);
+        return variable;
+    }
+}
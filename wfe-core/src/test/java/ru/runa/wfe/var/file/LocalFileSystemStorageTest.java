@@ -0,0 +1,105 @@
+package ru.runa.wfe.var.file;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.FileSystems;
+
+import org.testng.Assert;
+import org.testng.SkipException;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import ru.runa.wfe.execution.Process;
+import ru.runa.wfe.var.Variable;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+
+public class LocalFileSystemStorageTest {
+    private File previousStorageDir;
+
+    @BeforeClass
+    public void setUp() {
+        previousStorageDir = LocalFileSystemStorage.storageDir;
+        LocalFileSystemStorage.storageDir = Files.createTempDir();
+    }
+
+    @AfterClass
+    public void tearDown() {
+        LocalFileSystemStorage.storageDir = previousStorageDir;
+    }
+
+    @Test()
+    public void streamedCopyTest() throws Exception {
+        byte[] data = new byte[300000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        LocalFileSystemVariable source = createVariable(1L, new FileVariableImpl("a.bin", data, "application/octet-stream"));
+        Assert.assertEquals(source.getSize(), data.length);
+        try (InputStream in = source.getInputStream()) {
+            Assert.assertEquals(ByteStreams.toByteArray(in), data);
+        }
+
+        LocalFileSystemVariable copy = createVariable(2L, source);
+        Assert.assertEquals(copy.getName(), "a.bin");
+        Assert.assertEquals(copy.getData(), data);
+    }
+
+    @Test()
+    public void contentAddressedTest() throws Exception {
+        if (!FileSystems.getDefault().supportedFileAttributeViews().contains("unix")) {
+            throw new SkipException("Links count is not supported by file system");
+        }
+        byte[] data = "content-addressed".getBytes();
+        LocalFileSystemVariable first = createContentAddressedVariable(3L, new FileVariableImpl("a.txt", data, "text/plain"));
+        LocalFileSystemVariable second = createContentAddressedVariable(4L, new FileVariableImpl("b.txt", data, "text/plain"));
+        LocalFileSystemVariable copy = createContentAddressedVariable(5L, first);
+        Assert.assertEquals(second.getData(), data);
+        Assert.assertEquals(copy.getData(), data);
+        File contentFile = first.getContentFile();
+        Assert.assertEquals(java.nio.file.Files.getAttribute(contentFile.toPath(), "unix:nlink"), 4);
+        contentFile.setLastModified(0);
+
+        Assert.assertEquals(LocalFileSystemStorage.removeUnusedContent(0), 0);
+        first.getContentFile().delete();
+        second.getContentFile().delete();
+        copy.getContentFile().delete();
+        Assert.assertEquals(LocalFileSystemStorage.removeUnusedContent(0), 1);
+    }
+
+    @Test()
+    public void writeDoesNotChangeLinkedContentTest() throws Exception {
+        byte[] data = "linked".getBytes();
+        byte[] newData = "changed".getBytes();
+        LocalFileSystemVariable first = createContentAddressedVariable(6L, new FileVariableImpl("a.txt", data, "text/plain"));
+        LocalFileSystemVariable second = createContentAddressedVariable(7L, new FileVariableImpl("a.txt", data, "text/plain"));
+        LocalFileSystemStorage.write(new FileVariableImpl("a.txt", newData, "text/plain"), second.getContentFile());
+        Assert.assertEquals(second.getData(), newData);
+        Assert.assertEquals(first.getData(), data);
+    }
+
+    private static LocalFileSystemVariable createContentAddressedVariable(Long processId, FileVariable content) throws Exception {
+        LocalFileSystemVariable result = new LocalFileSystemVariable(mockVariable(processId), "file", content);
+        LocalFileSystemStorage.writeContentAddressed(content, LocalFileSystemStorage.getContentFile(result.getVariablePath(), true));
+        return result;
+    }
+
+    private static LocalFileSystemVariable createVariable(Long processId, FileVariable content) throws Exception {
+        LocalFileSystemVariable result = new LocalFileSystemVariable(mockVariable(processId), "file", content);
+        LocalFileSystemStorage.write(content, LocalFileSystemStorage.getContentFile(result.getVariablePath(), true));
+        return result;
+    }
+
+    private static Variable<?> mockVariable(Long processId) {
+        Process process = mock(Process.class);
+        when(process.getId()).thenReturn(processId);
+        Variable<?> variable = mock(Variable.class);
+        when(variable.getProcess()).thenReturn(process);
+        return variable;
+    }
+}
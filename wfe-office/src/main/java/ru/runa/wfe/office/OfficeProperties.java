@@ -17,4 +17,11 @@ public class OfficeProperties {
         return RESOURCES.getStringProperty("docx.placeholder.vmerge", "-||-");
     }
 
+    /**
+     * Returns count of parsed workbooks, kept in memory by excel storage. 0 disables caching.
+     */
+    public static int getExcelStorageCacheSize() {
+        return RESOURCES.getIntegerProperty("excel.storage.cache.size", 10);
+    }
+
 }
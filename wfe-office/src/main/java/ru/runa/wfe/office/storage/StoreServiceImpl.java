@@ -5,11 +5,7 @@ import com.google.common.base.Strings;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
@@ -88,68 +84,57 @@ public class StoreServiceImpl implements StoreService {
     }
 
     @Override
-    public ExecutionResult findByFilter(Properties properties, WfVariable variable, String condition) throws Exception {
+    public ExecutionResult findByFilter(Properties properties, WfVariable variable, final String condition) throws Exception {
         if (!existOutputParamByVariableName(variable)) {
             return ExecutionResult.EMPTY;
         }
         initParams(properties);
-        Workbook wb = getWorkbook(fullPath);
-        return new ExecutionResult(find(wb, constraints, format, condition));
+        return WorkbookCache.execute(fullPath, false, new WorkbookCache.Operation<ExecutionResult>() {
+
+            @Override
+            public ExecutionResult execute(Workbook workbook) {
+                return new ExecutionResult(find(workbook, constraints, format, condition));
+            }
+        });
     }
 
     @Override
-    public void update(Properties properties, WfVariable variable, String condition) throws Exception {
+    public void update(Properties properties, final WfVariable variable, final String condition) throws Exception {
         initParams(properties);
-        Workbook wb = getWorkbook(fullPath);
-        update(wb, constraints, variable.getValue(), format, condition, false);
-        OutputStream os = null;
-        try {
-            os = new FileOutputStream(fullPath);
-            wb.write(os);
-        } catch (IOException e) {
-            log.error("", e);
-            throw new BlockedFileException();
-        } finally {
-            os.close();
-        }
+        WorkbookCache.execute(fullPath, true, new WorkbookCache.Operation<Void>() {
+
+            @Override
+            public Void execute(Workbook workbook) {
+                update(workbook, constraints, variable.getValue(), format, condition, false);
+                return null;
+            }
+        });
     }
 
     @Override
-    public void delete(Properties properties, WfVariable variable, String condition) throws Exception {
+    public void delete(Properties properties, final WfVariable variable, final String condition) throws Exception {
         initParams(properties);
-        Workbook wb = getWorkbook(fullPath);
-        update(wb, constraints, variable.getValue(), format, condition, true);
-        OutputStream os = null;
-        try {
-            os = new FileOutputStream(fullPath);
-            wb.write(os);
-        } catch (IOException e) {
-            log.error("", e);
-            throw new BlockedFileException();
-        } finally {
-            if (os != null) {
-                os.close();
+        WorkbookCache.execute(fullPath, true, new WorkbookCache.Operation<Void>() {
+
+            @Override
+            public Void execute(Workbook workbook) {
+                update(workbook, constraints, variable.getValue(), format, condition, true);
+                return null;
             }
-        }
+        });
     }
 
     @Override
-    public void save(Properties properties, WfVariable variable, boolean appendTo) throws Exception {
+    public void save(Properties properties, final WfVariable variable, final boolean appendTo) throws Exception {
         initParams(properties);
-        Workbook wb = getWorkbook(fullPath);
-        save(wb, constraints, format, variable, appendTo);
-        OutputStream os = null;
-        try {
-            os = new FileOutputStream(fullPath);
-            wb.write(os);
-        } catch (IOException e) {
-            log.error("", e);
-            throw new BlockedFileException();
-        } finally {
-            if (os != null) {
-                os.close();
+        WorkbookCache.execute(fullPath, true, new WorkbookCache.Operation<Void>() {
+
+            @Override
+            public Void execute(Workbook workbook) {
+                save(workbook, constraints, format, variable, appendTo);
+                return null;
             }
-        }
+        });
     }
 
     private void initParams(Properties properties) throws Exception {
@@ -256,21 +241,6 @@ public class StoreServiceImpl implements StoreService {
         }
     }
 
-    @SuppressWarnings("resource")
-    private Workbook getWorkbook(String fullPath) throws IOException, FileNotFoundException {
-        Workbook wb = null;
-        InputStream is = new FileInputStream(fullPath);
-        if (fullPath.endsWith(".xls")) {
-            wb = new HSSFWorkbook(is);
-        } else if (fullPath.endsWith(".xlsx")) {
-            wb = new XSSFWorkbook(is);
-        } else {
-            throw new IllegalArgumentException("excel file extension is incorrect!");
-        }
-        is.close();
-        return wb;
-    }
-
     @SuppressWarnings("rawtypes")
     private List find(Workbook workbook, ExcelConstraints constraints, VariableFormat variableFormat, String condition) {
         boolean all = Strings.isNullOrEmpty(condition);
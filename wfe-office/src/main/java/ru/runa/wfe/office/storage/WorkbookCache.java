@@ -0,0 +1,116 @@
+package ru.runa.wfe.office.storage;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.Striped;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.locks.Lock;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import ru.runa.wfe.office.OfficeProperties;
+
+/**
+ * Parsed workbooks, shared by all {@link StoreServiceImpl} instances. Workbook is parsed once and reused while file modification time and length
+ * are not changed, so files changed outside of storage are re-read. Operations on the same file are serialized, because POI workbooks are not
+ * thread-safe and even reading creates missing rows.
+ */
+class WorkbookCache {
+    private static final Log log = LogFactory.getLog(WorkbookCache.class);
+    private static final Cache<String, CachedWorkbook> workbooks = CacheBuilder.newBuilder()
+            .maximumSize(OfficeProperties.getExcelStorageCacheSize()).softValues().build();
+    private static final Striped<Lock> locks = Striped.lazyWeakLock(64);
+
+    interface Operation<T> {
+        T execute(Workbook workbook) throws Exception;
+    }
+
+    /**
+     * Executes operation with workbook of file.
+     *
+     * @param write
+     *            whether operation changes workbook, workbook is written to file after successful execution.
+     */
+    static <T> T execute(String fullPath, boolean write, Operation<T> operation) throws Exception {
+        File file = new File(fullPath).getAbsoluteFile();
+        String key = file.getPath();
+        Lock lock = locks.get(key);
+        lock.lock();
+        try {
+            CachedWorkbook cached = workbooks.getIfPresent(key);
+            if (cached == null || !cached.isActual(file)) {
+                cached = new CachedWorkbook(read(file));
+                cached.update(file);
+                workbooks.put(key, cached);
+            }
+            T result = operation.execute(cached.workbook);
+            if (write) {
+                write(cached.workbook, file);
+                cached.update(file);
+            }
+            return result;
+        } catch (Exception e) {
+            // workbook may be partially changed
+            workbooks.invalidate(key);
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Workbook read(File file) throws IOException {
+        InputStream is = new FileInputStream(file);
+        try {
+            if (file.getName().endsWith(".xls")) {
+                return new HSSFWorkbook(is);
+            } else if (file.getName().endsWith(".xlsx")) {
+                return new XSSFWorkbook(is);
+            } else {
+                throw new IllegalArgumentException("excel file extension is incorrect!");
+            }
+        } finally {
+            is.close();
+        }
+    }
+
+    private static void write(Workbook workbook, File file) throws IOException {
+        OutputStream os = null;
+        try {
+            os = new FileOutputStream(file);
+            workbook.write(os);
+        } catch (IOException e) {
+            log.error("", e);
+            throw new BlockedFileException();
+        } finally {
+            if (os != null) {
+                os.close();
+            }
+        }
+    }
+
+    private static class CachedWorkbook {
+        private final Workbook workbook;
+        private long lastModified;
+        private long length;
+
+        private CachedWorkbook(Workbook workbook) {
+            this.workbook = workbook;
+        }
+
+        private boolean isActual(File file) {
+            return file.lastModified() == lastModified && file.length() == length;
+        }
+
+        private void update(File file) {
+            lastModified = file.lastModified();
+            length = file.length();
+        }
+    }
+}
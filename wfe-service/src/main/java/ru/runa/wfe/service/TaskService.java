@@ -5,6 +5,8 @@ import java.util.Map;
 import java.util.Set;
 import ru.runa.wfe.execution.ProcessDoesNotExistException;
 import ru.runa.wfe.presentation.BatchPresentation;
+import ru.runa.wfe.presentation.KeysetCursor;
+import ru.runa.wfe.presentation.KeysetPage;
 import ru.runa.wfe.task.TaskAlreadyAcceptedException;
 import ru.runa.wfe.task.TaskDoesNotExistException;
 import ru.runa.wfe.task.dto.WfTask;
@@ -30,6 +32,19 @@ public interface TaskService {
      */
     public List<WfTask> getMyTasks(User user, BatchPresentation batchPresentation);
 
+    /**
+     * Gets page of tasks for authenticated user by {@link BatchPresentation}. Sorting, filtering and page size are applied in database; page
+     * number is ignored, page starts after cursor position.
+     * 
+     * @param user
+     *            authorized user
+     * @param batchPresentation
+     * @param after
+     *            cursor, returned with previous page, or <code>null</code> to get first page
+     * @return not <code>null</code>
+     */
+    public KeysetPage<WfTask> getMyTasks(User user, BatchPresentation batchPresentation, KeysetCursor after);
+
     /**
      * Gets tasks by {@link BatchPresentation}.
      * 
@@ -4,6 +4,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import ru.runa.wfe.presentation.BatchPresentation;
+import ru.runa.wfe.presentation.KeysetCursor;
+import ru.runa.wfe.presentation.KeysetPage;
 import ru.runa.wfe.service.TaskService;
 import ru.runa.wfe.task.dto.WfTask;
 import ru.runa.wfe.user.Executor;
@@ -82,6 +84,15 @@ public class TaskServiceDelegate extends Ejb3Delegate implements TaskService {
         }
     }
 
+    @Override
+    public KeysetPage<WfTask> getMyTasks(User user, BatchPresentation batchPresentation, KeysetCursor after) {
+        try {
+            return getTaskService().getMyTasks(user, batchPresentation, after);
+        } catch (Exception e) {
+            throw handleException(e);
+        }
+    }
+
     @Override
     public List<WfTask> getTasks(User user, BatchPresentation batchPresentation) {
         try {
@@ -107,35 +107,17 @@ public class ReceiveMessageBean implements MessageListener {
                 try {
                     ProcessDefinition processDefinition = processDefinitionLoader.getDefinition(token.getProcess().getDeployment().getId());
                     BaseMessageNode receiveMessageNode = (BaseMessageNode) token.getNodeNotNull(processDefinition);
-                    ExecutionContext executionContext = new ExecutionContext(processDefinition, token);
                     if (errorEventData != null) {
                         if (receiveMessageNode.getEventType() == MessageEventType.error && receiveMessageNode.getParentElement() instanceof Node) {
                             Long processId = token.getProcess().getId();
                             String nodeId = ((Node) receiveMessageNode.getParentElement()).getNodeId();
                             if (processId.equals(errorEventData.processId) && nodeId.equals(errorEventData.nodeId)) {
-                                handlers.add(new ReceiveMessageData(executionContext, receiveMessageNode));
+                                handlers.add(new ReceiveMessageData(token, receiveMessageNode));
                                 break;
                             }
                         }
-                    } else {
-                        boolean suitable = true;
-                        VariableProvider variableProvider = executionContext.getVariableProvider();
-                        for (VariableMapping mapping : receiveMessageNode.getVariableMappings()) {
-                            if (mapping.isPropertySelector()) {
-                                String selectorValue = message.getStringProperty(mapping.getName());
-                                String expectedValue = Utils.getMessageSelectorValue(variableProvider, receiveMessageNode, mapping);
-                                if (!Objects.equal(expectedValue, selectorValue)) {
-                                    log.debug(message + " rejected in " + token + " due to diff in " + mapping.getName() + " (" + expectedValue
-                                            + "!=" + selectorValue + ")");
-                                    suitable = false;
-                                    break;
-
-                                }
-                            }
-                        }
-                        if (suitable) {
-                            handlers.add(new ReceiveMessageData(executionContext, receiveMessageNode));
-                        }
+                    } else if (isSuitable(message, processDefinition, token, receiveMessageNode)) {
+                        handlers.add(new ReceiveMessageData(token, receiveMessageNode));
                     }
                 } catch (Exception e) {
                     log.error("Unable to handle " + token, e);
@@ -161,6 +143,30 @@ public class ReceiveMessageBean implements MessageListener {
         }
     }
 
+    /**
+     * Checks message selector against current token variables. Token message selector is stored on node enter and is not updated on selector
+     * variables change, so tokens, found by message selector, are checked too. Execution context is created only for nodes with selectors.
+     */
+    private boolean isSuitable(ObjectMessage message, ProcessDefinition processDefinition, Token token, BaseMessageNode receiveMessageNode)
+            throws JMSException {
+        VariableProvider variableProvider = null;
+        for (VariableMapping mapping : receiveMessageNode.getVariableMappings()) {
+            if (mapping.isPropertySelector()) {
+                if (variableProvider == null) {
+                    variableProvider = new ExecutionContext(processDefinition, token).getVariableProvider();
+                }
+                String selectorValue = message.getStringProperty(mapping.getName());
+                String expectedValue = Utils.getMessageSelectorValue(variableProvider, receiveMessageNode, mapping);
+                if (!Objects.equal(expectedValue, selectorValue)) {
+                    log.debug(message + " rejected in " + token + " due to diff in " + mapping.getName() + " (" + expectedValue + "!="
+                            + selectorValue + ")");
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     private void handleMessage(final ReceiveMessageData data, final ObjectMessage message) {
         try {
             new TransactionalExecutor(context.getUserTransaction()) {
@@ -201,9 +207,9 @@ public class ReceiveMessageBean implements MessageListener {
         private Long tokenId;
         private BaseMessageNode node;
 
-        public ReceiveMessageData(ExecutionContext executionContext, BaseMessageNode node) {
-            this.processId = executionContext.getProcess().getId();
-            this.tokenId = executionContext.getToken().getId();
+        public ReceiveMessageData(Token token, BaseMessageNode node) {
+            this.processId = token.getProcess().getId();
+            this.tokenId = token.getId();
             this.node = node;
         }
 
@@ -19,6 +19,8 @@ import ru.runa.wfe.execution.logic.ExecutionLogic;
 import ru.runa.wfe.lang.ProcessDefinition;
 import ru.runa.wfe.presentation.BatchPresentation;
 import ru.runa.wfe.presentation.BatchPresentationFactory;
+import ru.runa.wfe.presentation.KeysetCursor;
+import ru.runa.wfe.presentation.KeysetPage;
 import ru.runa.wfe.service.decl.TaskServiceLocal;
 import ru.runa.wfe.service.decl.TaskServiceRemote;
 import ru.runa.wfe.service.decl.TaskWebServiceRemote;
@@ -54,6 +56,15 @@ public class TaskServiceBean implements TaskServiceLocal, TaskServiceRemote, Tas
         return taskLogic.getMyTasks(user, batchPresentation);
     }
 
+    @WebMethod(exclude = true)
+    @Override
+    public KeysetPage<WfTask> getMyTasks(@NonNull User user, BatchPresentation batchPresentation, KeysetCursor after) {
+        if (batchPresentation == null) {
+            batchPresentation = BatchPresentationFactory.TASKS.createDefault();
+        }
+        return taskLogic.getMyTasks(user, batchPresentation, after);
+    }
+
     @Override
     @WebResult(name = "result")
     public List<WfTask> getTasks(@WebParam(name = "user") @NonNull User user,